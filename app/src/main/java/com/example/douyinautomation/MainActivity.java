@@ -3,7 +3,6 @@ package com.example.douyinautomation;
 import android.accessibilityservice.AccessibilityServiceInfo;
 import android.content.Context;
 import android.content.Intent;
-import android.content.SharedPreferences;
 import android.os.Bundle;
 import android.provider.Settings;
 import android.view.View;
@@ -15,33 +14,37 @@ import android.widget.Toast;
 
 import androidx.appcompat.app.AppCompatActivity;
 
+import com.example.douyinautomation.utils.ActionJournal;
+import com.example.douyinautomation.utils.AutomationSettings;
+import com.example.douyinautomation.utils.SettingsManager;
 import com.google.android.material.textfield.TextInputEditText;
 
+import java.text.SimpleDateFormat;
+import java.util.Date;
 import java.util.List;
+import java.util.Locale;
 
 public class MainActivity extends AppCompatActivity {
 
-    private static final String PREFS_NAME = "DouyinAutomationPrefs";
-    private static final String KEY_LIKE = "auto_like";
-    private static final String KEY_FOLLOW = "auto_follow";
-    private static final String KEY_COMMENT = "auto_comment";
-    private static final String KEY_SCROLL = "auto_scroll";
-    private static final String KEY_COMMENTS = "comments_list";
+    // 操作记录显示最近几天的统计和最近几条记录
+    private static final int HISTORY_DAYS = 7;
+    private static final int HISTORY_ENTRIES = 20;
 
     private TextView txtStatus;
+    private TextView txtHistory;
     private Button btnAccessibility;
     private CheckBox chkLike, chkFollow, chkComment, chkScroll;
     private TextInputEditText edtComments;
     private Button btnSave;
 
-    private SharedPreferences preferences;
+    private SettingsManager settingsManager;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
 
-        preferences = getSharedPreferences(PREFS_NAME, MODE_PRIVATE);
+        settingsManager = new SettingsManager(this);
 
         initViews();
         loadSettings();
@@ -52,10 +55,18 @@ public class MainActivity extends AppCompatActivity {
     protected void onResume() {
         super.onResume();
         updateServiceStatus();
+        loadHistory();
+    }
+
+    @Override
+    protected void onDestroy() {
+        settingsManager.close();
+        super.onDestroy();
     }
 
     private void initViews() {
         txtStatus = findViewById(R.id.txtStatus);
+        txtHistory = findViewById(R.id.txtHistory);
         btnAccessibility = findViewById(R.id.btnAccessibility);
         chkLike = findViewById(R.id.chkLike);
         chkFollow = findViewById(R.id.chkFollow);
@@ -66,11 +77,12 @@ public class MainActivity extends AppCompatActivity {
     }
 
     private void loadSettings() {
-        chkLike.setChecked(preferences.getBoolean(KEY_LIKE, true));
-        chkFollow.setChecked(preferences.getBoolean(KEY_FOLLOW, false));
-        chkComment.setChecked(preferences.getBoolean(KEY_COMMENT, false));
-        chkScroll.setChecked(preferences.getBoolean(KEY_SCROLL, true));
-        edtComments.setText(preferences.getString(KEY_COMMENTS, "很棒！\n真不错\n支持一下\n点赞了"));
+        AutomationSettings settings = settingsManager.get();
+        chkLike.setChecked(settings.isAutoLike());
+        chkFollow.setChecked(settings.isAutoFollow());
+        chkComment.setChecked(settings.isAutoComment());
+        chkScroll.setChecked(settings.isAutoScroll());
+        edtComments.setText(settings.getCommentsText());
     }
 
     private void setupListeners() {
@@ -92,13 +104,12 @@ public class MainActivity extends AppCompatActivity {
     }
 
     private void saveSettings() {
-        SharedPreferences.Editor editor = preferences.edit();
-        editor.putBoolean(KEY_LIKE, chkLike.isChecked());
-        editor.putBoolean(KEY_FOLLOW, chkFollow.isChecked());
-        editor.putBoolean(KEY_COMMENT, chkComment.isChecked());
-        editor.putBoolean(KEY_SCROLL, chkScroll.isChecked());
-        editor.putString(KEY_COMMENTS, edtComments.getText().toString());
-        editor.apply();
+        settingsManager.save(new AutomationSettings(
+                chkLike.isChecked(),
+                chkFollow.isChecked(),
+                chkComment.isChecked(),
+                chkScroll.isChecked(),
+                edtComments.getText().toString()));
     }
 
     private void updateServiceStatus() {
@@ -108,6 +119,71 @@ public class MainActivity extends AppCompatActivity {
         txtStatus.setText(statusText);
     }
 
+    /**
+     * 在后台线程读取操作记录，读完后在主线程显示
+     */
+    private void loadHistory() {
+        new Thread(() -> {
+            List<ActionJournal.DayTotal> totals = ActionJournal.getDailyTotals(this, HISTORY_DAYS);
+            List<ActionJournal.Entry> entries = ActionJournal.query(this, 0, HISTORY_ENTRIES);
+            runOnUiThread(() -> {
+                if (!isFinishing()) {
+                    showHistory(totals, entries);
+                }
+            });
+        }, "HistoryLoader").start();
+    }
+
+    private void showHistory(List<ActionJournal.DayTotal> totals, List<ActionJournal.Entry> entries) {
+        if (totals.isEmpty() && entries.isEmpty()) {
+            txtHistory.setText(R.string.history_empty);
+            return;
+        }
+
+        SimpleDateFormat dayFormat = new SimpleDateFormat("MM-dd", Locale.getDefault());
+        SimpleDateFormat timeFormat = new SimpleDateFormat("MM-dd HH:mm:ss", Locale.getDefault());
+        StringBuilder text = new StringBuilder();
+        for (ActionJournal.DayTotal total : totals) {
+            text.append(getString(R.string.history_day_total,
+                    dayFormat.format(new Date(total.dayStart)),
+                    total.getSucceeded("like"),
+                    total.getSucceeded("follow"),
+                    total.getSucceeded("send_comment"),
+                    total.getSucceeded("scroll"),
+                    total.getFailed())).append('\n');
+        }
+        text.append('\n');
+        for (ActionJournal.Entry entry : entries) {
+            text.append(getString(R.string.history_entry,
+                    timeFormat.format(new Date(entry.time)),
+                    actionLabel(entry.action),
+                    outcomeLabel(entry.outcome))).append('\n');
+        }
+        txtHistory.setText(text.toString().trim());
+    }
+
+    private static String actionLabel(String action) {
+        switch (action) {
+            case "like": return "点赞";
+            case "follow": return "关注";
+            case "open_comments": return "打开评论区";
+            case "input_comment": return "输入评论";
+            case "send_comment": return "发送评论";
+            case "close_comments": return "关闭评论区";
+            case "scroll": return "滑动到下一个视频";
+            default: return action;
+        }
+    }
+
+    private static String outcomeLabel(ActionJournal.Outcome outcome) {
+        switch (outcome) {
+            case SUCCEEDED: return "成功";
+            case FAILED: return "失败";
+            case SKIPPED: return "跳过";
+            default: return "已取消";
+        }
+    }
+
     private boolean isAccessibilityServiceEnabled() {
         AccessibilityManager accessibilityManager = (AccessibilityManager) getSystemService(Context.ACCESSIBILITY_SERVICE);
         List<AccessibilityServiceInfo> enabledServices = accessibilityManager.getEnabledAccessibilityServiceList(
@@ -0,0 +1,329 @@
+package com.example.douyinautomation.service;
+
+import android.os.Handler;
+import android.os.SystemClock;
+
+import com.example.douyinautomation.utils.ServiceMetrics;
+import com.example.douyinautomation.utils.UITreeSnapshot;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 操作流水线
+ *
+ * 把一个视频上要做的操作（点赞、关注、评论、滑动）声明为按顺序执行的步骤，
+ * 每个步骤有延迟、前置条件和所属分组：前置条件不满足时跳过该步骤（可以声明为等待条件满足，超时才跳过），
+ * 步骤失败时跳过同一分组的后续步骤（例如评论面板没打开就不再输入评论）。
+ * 整条流水线可以一次性取消，已排队的回调会从Handler中移除，不会残留。
+ * 每个步骤记录排队、等待和执行耗时。
+ * 所有方法都应在构造时传入的Handler所在线程上调用。
+ */
+public class ActionPipeline {
+
+    /**
+     * 步骤执行前检查的条件
+     */
+    public interface Precondition {
+        boolean test(UITreeSnapshot snapshot);
+    }
+
+    /**
+     * 步骤的具体操作
+     */
+    public interface StepAction {
+        /**
+         * @return 操作是否成功
+         */
+        boolean run(UITreeSnapshot snapshot);
+    }
+
+    /**
+     * 每个步骤执行前获取最新的界面树快照
+     */
+    public interface SnapshotProvider {
+        UITreeSnapshot get();
+    }
+
+    /**
+     * 流水线结束回调
+     */
+    public interface Listener {
+        void onPipelineFinished(ActionPipeline pipeline, boolean cancelled);
+    }
+
+    public enum StepResult {
+        PENDING, SUCCEEDED, FAILED, SKIPPED, CANCELLED
+    }
+
+    /**
+     * 步骤声明
+     */
+    public static final class Step {
+        final String name;
+        final String group;
+        final long delayMs;
+        final Precondition precondition;
+        final long waitTimeoutMs;
+        final StepAction action;
+
+        Step(String name, String group, long delayMs, Precondition precondition, long waitTimeoutMs, StepAction action) {
+            this.name = name;
+            this.group = group;
+            this.delayMs = delayMs;
+            this.precondition = precondition;
+            this.waitTimeoutMs = waitTimeoutMs;
+            this.action = action;
+        }
+    }
+
+    /**
+     * 单个步骤的执行记录
+     */
+    public static final class StepRecord {
+        public final String name;
+        public final String group;
+        public StepResult result = StepResult.PENDING;
+        // 计划执行时间与实际开始时间的差，反映工作线程的排队情况
+        public long queueLatencyMs = 0;
+        // 获取快照和检查前置条件的耗时
+        public long prepareMs = 0;
+        // 等待前置条件满足的时间
+        public long waitMs = 0;
+        // 执行操作的耗时
+        public long actionMs = 0;
+
+        StepRecord(String name, String group) {
+            this.name = name;
+            this.group = group;
+        }
+
+        @Override
+        public String toString() {
+            return name + "=" + result + "(排队 " + queueLatencyMs + "ms，准备 " + prepareMs
+                    + "ms，等待 " + waitMs + "ms，执行 " + actionMs + "ms)";
+        }
+    }
+
+    /**
+     * 流水线构建器
+     */
+    public static class Builder {
+        private final List<Step> steps = new ArrayList<>();
+
+        /**
+         * 添加一个步骤
+         *
+         * @param name 步骤名，用于日志和统计
+         * @param group 分组，同组步骤失败后后续步骤跳过
+         * @param delayMs 上一步骤结束后等待的时间
+         * @param precondition 前置条件，为null表示无条件执行
+         * @param action 操作
+         */
+        public Builder addStep(String name, String group, long delayMs, Precondition precondition, StepAction action) {
+            steps.add(new Step(name, group, delayMs, precondition, 0, action));
+            return this;
+        }
+
+        /**
+         * 添加一个等待条件满足后才执行的步骤，条件由界面变化事件触发检查，超时则跳过
+         *
+         * @param delayMs 上一步骤结束后至少等待的时间
+         * @param condition 等待的条件
+         * @param timeoutMs 最长等待时间
+         */
+        public Builder addWaitingStep(String name, String group, long delayMs, Precondition condition,
+                                      long timeoutMs, StepAction action) {
+            steps.add(new Step(name, group, delayMs, condition, timeoutMs, action));
+            return this;
+        }
+
+        public boolean isEmpty() {
+            return steps.isEmpty();
+        }
+
+        public ActionPipeline build(Handler handler, SnapshotProvider snapshotProvider,
+                                    ConditionWaiter conditionWaiter, Listener listener) {
+            return new ActionPipeline(handler, snapshotProvider, conditionWaiter, listener, new ArrayList<>(steps));
+        }
+    }
+
+    private final Handler handler;
+    private final SnapshotProvider snapshotProvider;
+    private final ConditionWaiter conditionWaiter;
+    private final Listener listener;
+    private final List<Step> steps;
+    private final List<StepRecord> records;
+
+    // 作为Handler消息的token，取消时一次性移除本流水线的所有回调
+    private final Object token = new Object();
+
+    private int nextStep = 0;
+    private long scheduledAt = 0;
+    private final Set<String> failedGroups = new HashSet<>();
+    private boolean started = false;
+    private boolean finished = false;
+    private long startTime = 0;
+    private long finishTime = 0;
+    private ConditionWaiter.Wait currentWait = null;
+
+    private final Runnable runNextStep = this::runNextStep;
+
+    private ActionPipeline(Handler handler, SnapshotProvider snapshotProvider, ConditionWaiter conditionWaiter,
+                           Listener listener, List<Step> steps) {
+        this.handler = handler;
+        this.snapshotProvider = snapshotProvider;
+        this.conditionWaiter = conditionWaiter;
+        this.listener = listener;
+        this.steps = steps;
+
+        List<StepRecord> list = new ArrayList<>(steps.size());
+        for (Step step : steps) {
+            list.add(new StepRecord(step.name, step.group));
+        }
+        this.records = Collections.unmodifiableList(list);
+    }
+
+    /**
+     * 开始执行第一个步骤
+     */
+    public void start() {
+        if (started) {
+            return;
+        }
+        started = true;
+        startTime = SystemClock.uptimeMillis();
+        scheduleNextStep();
+    }
+
+    /**
+     * 取消流水线，移除所有尚未执行的回调
+     */
+    public void cancel() {
+        if (finished) {
+            return;
+        }
+        handler.removeCallbacksAndMessages(token);
+        if (currentWait != null) {
+            currentWait.cancel();
+            currentWait = null;
+            // 正在等待的步骤也算作取消
+            nextStep--;
+        }
+        for (int i = nextStep; i < records.size(); i++) {
+            records.get(i).result = StepResult.CANCELLED;
+        }
+        finish(true);
+    }
+
+    public boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * 各步骤的执行记录，顺序与声明顺序一致
+     */
+    public List<StepRecord> getStepRecords() {
+        return records;
+    }
+
+    /**
+     * 从开始到结束（或到现在）的总耗时
+     */
+    public long getElapsedMs() {
+        if (!started) {
+            return 0;
+        }
+        return (finished ? finishTime : SystemClock.uptimeMillis()) - startTime;
+    }
+
+    private void scheduleNextStep() {
+        // 所属分组已失败的步骤直接跳过，不必等待其延迟
+        while (nextStep < steps.size() && isGroupFailed(steps.get(nextStep).group)) {
+            records.get(nextStep).result = StepResult.SKIPPED;
+            nextStep++;
+        }
+        if (nextStep >= steps.size()) {
+            finish(false);
+            return;
+        }
+        scheduledAt = SystemClock.uptimeMillis() + steps.get(nextStep).delayMs;
+        handler.postAtTime(runNextStep, token, scheduledAt);
+    }
+
+    private void runNextStep() {
+        Step step = steps.get(nextStep);
+        StepRecord record = records.get(nextStep);
+        nextStep++;
+
+        long begin = SystemClock.uptimeMillis();
+        record.queueLatencyMs = begin - scheduledAt;
+
+        UITreeSnapshot snapshot = snapshotProvider.get();
+        boolean ready = snapshot != null && (step.precondition == null || step.precondition.test(snapshot));
+        record.prepareMs = SystemClock.uptimeMillis() - begin;
+
+        if (!ready && step.waitTimeoutMs > 0 && conditionWaiter != null) {
+            // 等待界面满足条件，满足后立即执行
+            currentWait = conditionWaiter.waitFor(step.precondition::test, step.waitTimeoutMs,
+                    ConditionWaiter.DEFAULT_POLL_INTERVAL_MS, (satisfied, waitedSnapshot, waitedMs) -> {
+                        currentWait = null;
+                        record.waitMs = waitedMs;
+                        completeStep(step, record, satisfied, waitedSnapshot);
+                    });
+            return;
+        }
+
+        completeStep(step, record, ready, snapshot);
+    }
+
+    private void completeStep(Step step, StepRecord record, boolean ready, UITreeSnapshot snapshot) {
+        if (!ready) {
+            record.result = StepResult.SKIPPED;
+            ServiceMetrics.increment(ServiceMetrics.Counter.ACTIONS_SKIPPED);
+            markGroupFailed(step.group);
+        } else {
+            long actionStart = SystemClock.uptimeMillis();
+            long actionStartNanos = System.nanoTime();
+            boolean success = step.action.run(snapshot);
+            record.actionMs = SystemClock.uptimeMillis() - actionStart;
+            ServiceMetrics.recordSince(ServiceMetrics.Timer.ACTION, actionStartNanos);
+            ServiceMetrics.recordAction(step.name, success);
+            record.result = success ? StepResult.SUCCEEDED : StepResult.FAILED;
+            if (!success) {
+                markGroupFailed(step.group);
+            }
+        }
+
+        // 操作本身可能取消了流水线
+        if (!finished) {
+            scheduleNextStep();
+        }
+    }
+
+    private boolean isGroupFailed(String group) {
+        return group != null && failedGroups.contains(group);
+    }
+
+    private void markGroupFailed(String group) {
+        if (group != null) {
+            failedGroups.add(group);
+        }
+    }
+
+    private void finish(boolean cancelled) {
+        finished = true;
+        finishTime = SystemClock.uptimeMillis();
+        if (listener != null) {
+            listener.onPipelineFinished(this, cancelled);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ActionPipeline" + records + "，总耗时 " + getElapsedMs() + "ms";
+    }
+}
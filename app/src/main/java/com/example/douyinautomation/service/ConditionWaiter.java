@@ -0,0 +1,196 @@
+package com.example.douyinautomation.service;
+
+import android.os.Handler;
+import android.os.SystemClock;
+
+import com.example.douyinautomation.utils.UITreeSnapshot;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 条件等待
+ *
+ * 等待界面满足某个条件（例如评论输入框出现）后继续，而不是固定休眠。
+ * 收到窗口或内容变化事件时（{@link #signal()}）立即重新检查，
+ * 同时按固定间隔轮询作为兜底，超时后回调失败。
+ * 除 {@link #signal()} 可在任意线程调用外，其余方法都应在构造时传入的Handler所在线程上调用。
+ */
+public class ConditionWaiter {
+
+    // 事件密集时两次检查之间的最小间隔
+    private static final long MIN_CHECK_INTERVAL_MS = 50;
+
+    public static final long DEFAULT_POLL_INTERVAL_MS = 500;
+
+    /**
+     * 等待的条件
+     */
+    public interface Condition {
+        boolean test(UITreeSnapshot snapshot);
+    }
+
+    /**
+     * 等待结果回调
+     */
+    public interface Callback {
+        /**
+         * @param satisfied 条件是否已满足，false表示超时
+         * @param snapshot 满足条件时的快照，超时时为最后一次检查的快照（可能为null）
+         * @param waitedMs 实际等待的时间
+         */
+        void onResult(boolean satisfied, UITreeSnapshot snapshot, long waitedMs);
+    }
+
+    /**
+     * 一次等待，可以提前取消
+     */
+    public final class Wait {
+        final Condition condition;
+        final Callback callback;
+        final long startTime;
+        final long deadline;
+        final long pollIntervalMs;
+        boolean done = false;
+
+        final Runnable poll = this::poll;
+
+        Wait(Condition condition, Callback callback, long timeoutMs, long pollIntervalMs) {
+            this.condition = condition;
+            this.callback = callback;
+            this.startTime = SystemClock.uptimeMillis();
+            this.deadline = startTime + timeoutMs;
+            this.pollIntervalMs = pollIntervalMs;
+        }
+
+        /**
+         * 取消等待，不会再回调
+         */
+        public void cancel() {
+            if (!done) {
+                done = true;
+                handler.removeCallbacks(poll);
+                activeWaits.remove(this);
+                waiting = !activeWaits.isEmpty();
+            }
+        }
+
+        public boolean isDone() {
+            return done;
+        }
+
+        private void poll() {
+            check(snapshotProvider.get());
+            schedulePoll();
+        }
+
+        void schedulePoll() {
+            if (!done) {
+                long now = SystemClock.uptimeMillis();
+                handler.postAtTime(poll, Math.min(now + pollIntervalMs, deadline));
+            }
+        }
+
+        void check(UITreeSnapshot snapshot) {
+            if (done) {
+                return;
+            }
+
+            long now = SystemClock.uptimeMillis();
+            boolean satisfied = snapshot != null && condition.test(snapshot);
+            if (satisfied || now >= deadline) {
+                cancel();
+                if (satisfied) {
+                    satisfiedCount++;
+                } else {
+                    timeoutCount++;
+                }
+                callback.onResult(satisfied, snapshot, now - startTime);
+            }
+        }
+    }
+
+    private final Handler handler;
+    private final ActionPipeline.SnapshotProvider snapshotProvider;
+    private final List<Wait> activeWaits = new ArrayList<>();
+    // activeWaits是否非空，供其他线程上的signal()读取，没有等待时事件不再投递到Handler
+    private volatile boolean waiting = false;
+
+    private final AtomicBoolean checkScheduled = new AtomicBoolean(false);
+    private long lastCheckTime = 0;
+    private final Runnable checkAll = this::checkAll;
+    private final Runnable scheduleCheck = this::scheduleCheck;
+
+    private long satisfiedCount = 0;
+    private long timeoutCount = 0;
+
+    public ConditionWaiter(Handler handler, ActionPipeline.SnapshotProvider snapshotProvider) {
+        this.handler = handler;
+        this.snapshotProvider = snapshotProvider;
+    }
+
+    /**
+     * 开始等待条件满足。条件当前已满足时也会异步回调
+     *
+     * @param condition 条件
+     * @param timeoutMs 超时时间
+     * @param pollIntervalMs 没有事件时的轮询间隔
+     * @param callback 结果回调，在Handler线程上执行
+     */
+    public Wait waitFor(Condition condition, long timeoutMs, long pollIntervalMs, Callback callback) {
+        Wait wait = new Wait(condition, callback, timeoutMs, pollIntervalMs);
+        activeWaits.add(wait);
+        waiting = true;
+        // 开始时立即检查一次，之前错过的信号不影响结果
+        handler.post(wait.poll);
+        return wait;
+    }
+
+    /**
+     * 通知界面发生了变化，尽快重新检查所有等待中的条件。可在任意线程调用，没有等待时直接返回
+     */
+    public void signal() {
+        if (waiting && checkScheduled.compareAndSet(false, true)) {
+            handler.post(scheduleCheck);
+        }
+    }
+
+    /**
+     * 距上次检查不足最小间隔时推迟检查
+     */
+    private void scheduleCheck() {
+        long earliest = lastCheckTime + MIN_CHECK_INTERVAL_MS;
+        handler.postAtTime(checkAll, Math.max(SystemClock.uptimeMillis(), earliest));
+    }
+
+    private void checkAll() {
+        checkScheduled.set(false);
+        if (activeWaits.isEmpty()) {
+            return;
+        }
+
+        lastCheckTime = SystemClock.uptimeMillis();
+        UITreeSnapshot snapshot = snapshotProvider.get();
+        // 回调中可能开始新的等待，先复制一份
+        for (Wait wait : new ArrayList<>(activeWaits)) {
+            wait.check(snapshot);
+        }
+    }
+
+    /**
+     * 取消所有等待
+     */
+    public void cancelAll() {
+        for (Wait wait : new ArrayList<>(activeWaits)) {
+            wait.cancel();
+        }
+    }
+
+    /**
+     * 统计信息，用于日志输出
+     */
+    public String getStats() {
+        return "条件满足 " + satisfiedCount + "，超时 " + timeoutCount;
+    }
+}
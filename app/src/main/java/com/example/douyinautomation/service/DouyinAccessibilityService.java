@@ -1,301 +1,712 @@
 package com.example.douyinautomation.service;
 
 import android.accessibilityservice.AccessibilityService;
-import android.accessibilityservice.GestureDescription;
-import android.content.SharedPreferences;
-import android.graphics.Path;
-import android.graphics.Rect;
+import android.content.pm.ApplicationInfo;
+import android.content.res.Configuration;
 import android.os.Build;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Looper;
-import android.util.Log;
 import android.view.accessibility.AccessibilityEvent;
 import android.view.accessibility.AccessibilityNodeInfo;
 
 import androidx.annotation.RequiresApi;
 
+import com.example.douyinautomation.utils.ActionJournal;
+import com.example.douyinautomation.utils.ActionPlanner;
+import com.example.douyinautomation.utils.AutomationSettings;
 import com.example.douyinautomation.utils.DouyinUIHelper;
+import com.example.douyinautomation.utils.HelperCallBreakdown;
+import com.example.douyinautomation.utils.NodeLeakTracker;
+import com.example.douyinautomation.utils.NodeScope;
+import com.example.douyinautomation.utils.ScreenRecording;
+import com.example.douyinautomation.utils.SelectorProfile;
+import com.example.douyinautomation.utils.SelectorProfileLoader;
+import com.example.douyinautomation.utils.ServiceLog;
+import com.example.douyinautomation.utils.ServiceMetrics;
+import com.example.douyinautomation.utils.SettingsManager;
+import com.example.douyinautomation.utils.UITreeSnapshot;
+import com.example.douyinautomation.utils.UITreeTracker;
 
+import java.io.File;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class DouyinAccessibilityService extends AccessibilityService {
     private static final String TAG = "DouyinAccessibility";
     private static final String DOUYIN_PACKAGE = "com.ss.android.ugc.aweme";
-    private static final String PREFS_NAME = "DouyinAutomationPrefs";
     
-    private static final String KEY_LIKE = "auto_like";
-    private static final String KEY_FOLLOW = "auto_follow";
-    private static final String KEY_COMMENT = "auto_comment";
-    private static final String KEY_SCROLL = "auto_scroll";
-    private static final String KEY_COMMENTS = "comments_list";
+    // 等待评论面板和发送按钮出现的最长时间
+    private static final long COMMENT_PANEL_TIMEOUT_MS = 5000;
+    private static final long SEND_BUTTON_TIMEOUT_MS = 3000;
     
-    private boolean autoLike = true;
-    private boolean autoFollow = false;
-    private boolean autoComment = false;
-    private boolean autoScroll = true;
-    private String[] commentsList = {"很棒！", "真不错", "支持一下", "点赞了"};
+    // 记住最近处理过的视频数
+    private static final int RECENT_VIDEO_CAPACITY = 64;
     
+    // 工作线程上等待处理的树事件超过这个数量时，不再逐个转发，直接让快照整体重建
+    private static final int MAX_QUEUED_TASKS = 64;
+    
+    // 最多排队的手势数，一个视频上最多只有点击和滑动两个手势
+    private static final int MAX_QUEUED_GESTURES = 4;
+    
+    // 按包名过滤事件后收不到其他应用的窗口事件，定期确认抖音是否仍在前台
+    private static final long FOREGROUND_CHECK_INTERVAL_MS = 5000;
+    
+    // 定期把运行指标写入文件，供调试工具和界面读取
+    private static final String METRICS_FILE_NAME = "metrics.json";
+    private static final long METRICS_EXPORT_INTERVAL_MS = 60 * 1000;
+    
+    // 服务结束或进程崩溃时导出最近的日志
+    private static final String LOG_DUMP_FILE_NAME = "service-log.txt";
+    
+    // 主线程只接收和合并事件，工作线程上一条消息通常包含一次树查询，超过阈值记为慢消息
+    private static final long MAIN_SLOW_DISPATCH_MS = 100;
+    private static final long WORKER_SLOW_DISPATCH_MS = 300;
+    
+    // 设置快照，设置变化时在主线程上整体替换，工作线程只读取
+    private SettingsManager settingsManager;
+    private volatile AutomationSettings settings = AutomationSettings.DEFAULT;
+    
+    // 按屏幕、电量和温度调节处理强度，强度在主线程上更新，工作线程只读取
+    private ProcessingGovernor governor;
+    private volatile ProcessingGovernor.Mode processingMode = ProcessingGovernor.Mode.NORMAL;
+    
+    // 主线程只接收和合并事件
     private final Handler handler = new Handler(Looper.getMainLooper());
+    
+    // 树查询、界面检测和操作执行都在工作线程上
+    private final TreeWorker treeWorker = new TreeWorker("DouyinTreeWorker", MAX_QUEUED_TASKS);
+    private final Handler workerHandler = treeWorker.getHandler();
     private final Random random = new Random();
     
-    private boolean isProcessing = false;
-    private int currentVideoCount = 0;
+    // 连接时在主线程加载，工作线程定期保存其命中统计
+    private volatile SelectorProfile selectorProfile;
+    
+    // 调试版本录制事件和界面树，供离线回放
+    private volatile ScreenCapture screenCapture;
+    
+    // 每个操作的结果写入操作记录，供界面显示历史
+    private volatile ActionJournal actionJournal;
+    
+    // 坐标固定的手势预先构建，连接时创建，屏幕尺寸只在配置变化时更新
+    private volatile GestureFactory gestureFactory;
+    // 手势逐个派发，上一个结束后才派发下一个；连接时创建，之后只在工作线程上使用
+    private volatile GestureDispatcher gestureDispatcher;
+    
+    // 监控主线程和工作线程上每条消息的耗时，连接时创建，服务结束时输出最慢的消息
+    private volatile LooperWatchdog looperWatchdog;
+    
+    // 界面处理任务是否已在工作线程排队，保证同一时间最多排队一个
+    private final AtomicBoolean screenProcessingQueued = new AtomicBoolean(false);
+    // 工作线程积压过多时由主线程置位，工作线程下次获取快照前整体重建
+    private final AtomicBoolean snapshotInvalidated = new AtomicBoolean(false);
+    
+    // 以下状态只在工作线程上访问
+    // 当前视频上正在执行的操作，界面变化时整组取消
+    private ActionPipeline activePipeline;
+    // 判断界面并决定操作，记住最近处理过的视频，来回滑动时不会重复处理
+    private final ActionPlanner actionPlanner = new ActionPlanner(RECENT_VIDEO_CAPACITY);
+    // 正在输入的评论，发送成功后写入日志
+    private String pendingComment;
+    
+    // 长期持有当前窗口的快照，按事件局部更新
+    private final UITreeTracker treeTracker = new UITreeTracker();
+    
+    // 只在抖音自己的窗口中查找，窗口列表变化前沿用上次选中的窗口
+    private final WindowSelector windowSelector = new WindowSelector(this, DOUYIN_PACKAGE);
+    
+    // 等待界面满足条件的多步操作共用，事件到达时重新检查
+    private final ConditionWaiter conditionWaiter = new ConditionWaiter(workerHandler, this::captureSnapshot);
+    
+    // 按当前状态调整订阅的事件，不在抖音中时只订阅窗口切换
+    private final SubscriptionController subscriptionController =
+            new SubscriptionController(this, handler, DOUYIN_PACKAGE);
+    private final Runnable foregroundCheck = this::checkForeground;
+    
+    private final Runnable metricsExport = new Runnable() {
+        @Override
+        public void run() {
+            ServiceMetrics.exportTo(new File(getFilesDir(), METRICS_FILE_NAME));
+            // 服务通常随进程被杀而不是正常销毁，不能只在onDestroy中保存命中统计
+            SelectorProfile profile = selectorProfile;
+            if (profile != null) {
+                SelectorProfileLoader.saveStats(DouyinAccessibilityService.this, profile);
+            }
+            workerHandler.postDelayed(this, METRICS_EXPORT_INTERVAL_MS);
+        }
+    };
+    
+    private final Runnable processScreenTask = () -> {
+        screenProcessingQueued.set(false);
+        processCurrentScreen();
+    };
+    
+    // 合并同一窗口的连续事件，界面稳定后才处理
+    private final EventCoalescer eventCoalescer = new EventCoalescer(handler, (windowId, windowStateChanged) -> {
+        if (screenProcessingQueued.compareAndSet(false, true) && !treeWorker.submit(processScreenTask)) {
+            screenProcessingQueued.set(false);
+        }
+    });
     
     @Override
     public void onAccessibilityEvent(AccessibilityEvent event) {
+        subscriptionController.onEventReceived();
+        ServiceMetrics.increment(ServiceMetrics.Counter.EVENTS_RECEIVED);
+        
+        // 窗口列表变化（输入法、对话框、其他应用的悬浮窗）不一定来自抖音，在过滤包名之前处理
+        int eventType = event.getEventType();
+        if (eventType == AccessibilityEvent.TYPE_WINDOWS_CHANGED
+                || eventType == AccessibilityEvent.TYPE_WINDOW_STATE_CHANGED) {
+            windowSelector.invalidate();
+        }
+        
         // 只处理抖音应用的事件
         if (event.getPackageName() == null || !event.getPackageName().toString().equals(DOUYIN_PACKAGE)) {
+            // 空闲状态下不按包名过滤，其他窗口变化时确认抖音是否回到前台
+            if (subscriptionController.getMode() == SubscriptionController.Mode.IDLE && isAutomationEnabled()) {
+                scheduleForegroundCheck(0);
+            }
+            return;
+        }
+        
+        ScreenCapture capture = screenCapture;
+        if (capture != null) {
+            capture.recordEvent(event);
+        }
+        
+        // 所有功能关闭时只保留最少的订阅
+        if (!isAutomationEnabled()) {
+            leaveFeed();
+            return;
+        }
+        if (subscriptionController.getMode() == SubscriptionController.Mode.IDLE) {
+            enterFeed();
+        }
+        
+        // 记录界面变化位置，下次获取快照时只更新变化的子树
+        if (UITreeTracker.isTreeEvent(event.getEventType())) {
+            forwardTreeEvent(event);
+            conditionWaiter.signal();
+        }
+        
+        // 交给事件合并器，界面稳定后统一处理
+        eventCoalescer.onEvent(event);
+    }
+    
+    /**
+     * 把事件副本交给工作线程上的treeTracker，原事件在回调返回后会被系统回收
+     */
+    private void forwardTreeEvent(AccessibilityEvent event) {
+        if (snapshotInvalidated.get()) {
             return;
         }
         
-        // 读取设置
-        loadSettings();
+        final AccessibilityEvent copy = AccessibilityEvent.obtain(event);
+        boolean submitted = treeWorker.submit(() -> {
+            treeTracker.onEvent(copy);
+            copy.recycle();
+        });
+        if (!submitted) {
+            copy.recycle();
+            snapshotInvalidated.set(true);
+        }
+    }
+    
+    /**
+     * 进入抖音：订阅视频流需要的事件。空闲期间没有收到内容变化事件，快照需要整体重建
+     */
+    private void enterFeed() {
+        snapshotInvalidated.set(true);
+        subscriptionController.applyMode(SubscriptionController.Mode.FEED);
+        scheduleForegroundCheck(FOREGROUND_CHECK_INTERVAL_MS);
+    }
+    
+    /**
+     * 离开抖音或功能全部关闭：切换到空闲订阅，取消当前视频的操作
+     */
+    private void leaveFeed() {
+        if (subscriptionController.getMode() == SubscriptionController.Mode.IDLE) {
+            return;
+        }
+        subscriptionController.requestMode(SubscriptionController.Mode.IDLE);
+        workerHandler.removeCallbacks(foregroundCheck);
+        treeWorker.submit(() -> {
+            if (activePipeline != null) {
+                activePipeline.cancel();
+            }
+            onScreenChanged();
+        });
+    }
+    
+    private boolean isAutomationEnabled() {
+        return settings.isAnyEnabled() && processingMode != ProcessingGovernor.Mode.PAUSED;
+    }
+    
+    /**
+     * 设置变化，在主线程上执行。功能全部关闭时立即切换到空闲订阅，重新开启时检查抖音是否在前台
+     */
+    private void onSettingsChanged(AutomationSettings newSettings) {
+        settings = newSettings;
+        ServiceLog.d(TAG, "设置已更新: {}", newSettings);
+        if (!isAutomationEnabled()) {
+            leaveFeed();
+        } else if (subscriptionController.getMode() == SubscriptionController.Mode.IDLE) {
+            scheduleForegroundCheck(0);
+        }
+    }
+    
+    /**
+     * 处理强度变化，在主线程上调用：调整事件合并的等待时间，暂停时退出视频流，恢复时重新检查前台
+     */
+    private void onProcessingModeChanged(ProcessingGovernor.Mode oldMode, ProcessingGovernor.Mode newMode) {
+        processingMode = newMode;
+        eventCoalescer.setQuietPeriod(EventCoalescer.DEFAULT_QUIET_PERIOD_MS * newMode.coalesceScale);
+        eventCoalescer.setMaxDelay(EventCoalescer.DEFAULT_MAX_DELAY_MS * newMode.coalesceScale);
+        if (!isAutomationEnabled()) {
+            leaveFeed();
+        } else if (oldMode == ProcessingGovernor.Mode.PAUSED
+                && subscriptionController.getMode() == SubscriptionController.Mode.IDLE) {
+            scheduleForegroundCheck(0);
+        }
+    }
+    
+    private void scheduleForegroundCheck(long delayMs) {
+        workerHandler.removeCallbacks(foregroundCheck);
+        workerHandler.postDelayed(foregroundCheck, delayMs);
+    }
+    
+    /**
+     * 检查活动窗口是否属于抖音，在工作线程上执行
+     * 视频流和评论状态下定期执行；空闲状态下由其他应用的窗口事件触发
+     */
+    private void checkForeground() {
+        boolean inDouyin;
+        try (NodeScope scope = new NodeScope()) {
+            AccessibilityNodeInfo rootNode = scope.track(getRootInActiveWindow());
+            if (rootNode == null) {
+                // 窗口切换过程中可能暂时取不到，稍后再试
+                if (subscriptionController.getMode() != SubscriptionController.Mode.IDLE) {
+                    scheduleForegroundCheck(FOREGROUND_CHECK_INTERVAL_MS);
+                }
+                return;
+            }
+            CharSequence packageName = rootNode.getPackageName();
+            inDouyin = packageName != null && DOUYIN_PACKAGE.contentEquals(packageName);
+        }
         
-        // 根据事件类型处理
-        switch (event.getEventType()) {
-            case AccessibilityEvent.TYPE_WINDOW_STATE_CHANGED:
-            case AccessibilityEvent.TYPE_WINDOW_CONTENT_CHANGED:
-                if (!isProcessing) {
-                    processCurrentScreen();
+        boolean idle = subscriptionController.getMode() == SubscriptionController.Mode.IDLE;
+        if (inDouyin && idle) {
+            handler.post(() -> {
+                if (isAutomationEnabled() && subscriptionController.getMode() == SubscriptionController.Mode.IDLE) {
+                    enterFeed();
                 }
-                break;
+            });
+        } else if (!inDouyin && !idle) {
+            ServiceLog.d(TAG, "抖音已不在前台");
+            handler.post(this::leaveFeed);
+        } else if (!idle) {
+            // 视频流状态下按包名过滤，其他应用的悬浮窗出现或消失时收不到窗口变化，定期重新选择目标窗口
+            windowSelector.invalidate();
+            scheduleForegroundCheck(FOREGROUND_CHECK_INTERVAL_MS);
         }
     }
     
     @Override
     public void onInterrupt() {
-        Log.d(TAG, "无障碍服务被中断");
+        ServiceLog.d(TAG, "无障碍服务被中断");
+    }
+    
+    @Override
+    public void onDestroy() {
+        eventCoalescer.cancel();
+        handler.removeCallbacksAndMessages(null);
+        ServiceLog.d(TAG, "事件统计: {}", eventCoalescer.getStats());
+        if (settingsManager != null) {
+            settingsManager.close();
+        }
+        if (governor != null) {
+            governor.stop();
+            ServiceLog.d(TAG, "处理强度统计: {}", governor.getStats());
+        }
+        if (screenCapture != null) {
+            screenCapture.close();
+            screenCapture = null;
+        }
+        
+        // 快照只能在工作线程上释放
+        final SelectorProfile profile = selectorProfile;
+        treeWorker.shutdown(() -> {
+            if (activePipeline != null) {
+                activePipeline.cancel();
+            }
+            conditionWaiter.cancelAll();
+            // 取消流水线时写入的记录也要落盘
+            ActionJournal journal = actionJournal;
+            if (journal != null) {
+                ServiceLog.d(TAG, "操作记录: {}", journal.getStats());
+                journal.close();
+            }
+            GestureDispatcher dispatcher = gestureDispatcher;
+            if (dispatcher != null) {
+                dispatcher.clear();
+                ServiceLog.d(TAG, "手势统计: {}", dispatcher.getStats());
+            }
+            ServiceLog.d(TAG, "快照统计: {}，被拒绝的任务 {}", treeTracker.getStats(), treeWorker.getRejectedCount());
+            ServiceLog.d(TAG, "等待统计: {}", conditionWaiter.getStats());
+            treeTracker.release();
+            ServiceLog.d(TAG, "窗口统计: {}", windowSelector.getStats());
+            windowSelector.release();
+            ServiceLog.d(TAG, "运行指标: {}", ServiceMetrics.getSummary());
+            LooperWatchdog watchdog = looperWatchdog;
+            if (watchdog != null) {
+                watchdog.stop();
+                ServiceLog.i(TAG, "消息耗时: {}", watchdog.getReport());
+            }
+            ServiceMetrics.exportTo(new File(getFilesDir(), METRICS_FILE_NAME));
+            ServiceLog.dumpTo(new File(getFilesDir(), LOG_DUMP_FILE_NAME));
+            if (profile != null) {
+                SelectorProfileLoader.saveStats(this, profile);
+            }
+            NodeLeakTracker.report();
+        });
+        super.onDestroy();
     }
     
     @Override
     protected void onServiceConnected() {
         super.onServiceConnected();
-        Log.d(TAG, "无障碍服务已连接");
-        loadSettings();
+        ServiceLog.d(TAG, "无障碍服务已连接");
+        
+        // 只在连接时读取一次，之后由设置变化回调更新；重复连接时沿用已注册的监听
+        if (settingsManager == null) {
+            settingsManager = new SettingsManager(this);
+            settingsManager.setListener(this::onSettingsChanged);
+        }
+        settings = settingsManager.get();
+        
+        if (governor == null) {
+            governor = new ProcessingGovernor(this, this::onProcessingModeChanged);
+            governor.start();
+        }
+        
+        if (actionJournal == null) {
+            actionJournal = new ActionJournal(this);
+        }
+        
+        // 调试版本记录节点获取位置，服务结束时报告未回收的节点，并录制界面供离线回放
+        boolean debuggable = (getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0;
+        NodeLeakTracker.setEnabled(debuggable);
+        // 发布版本只把警告写入logcat，调试信息仍只存入环形缓冲，不格式化
+        ServiceLog.setLevels(debuggable ? ServiceLog.DEBUG : ServiceLog.WARN, ServiceLog.DEBUG);
+        ServiceLog.dumpOnCrash(new File(getFilesDir(), LOG_DUMP_FILE_NAME));
+        // 消息监控让Looper为每条消息拼接日志文本，只在调试版本开启
+        if (debuggable && looperWatchdog == null) {
+            looperWatchdog = new LooperWatchdog();
+            looperWatchdog.watch("主线程", Looper.getMainLooper(), MAIN_SLOW_DISPATCH_MS);
+            looperWatchdog.watch("工作线程", treeWorker.getLooper(), WORKER_SLOW_DISPATCH_MS);
+        }
+        if (debuggable && screenCapture == null) {
+            screenCapture = new ScreenCapture(new File(getFilesDir(), "captures"));
+        }
+        
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N && gestureFactory == null) {
+            createGestures();
+        }
+        
+        // 按已安装的抖音版本加载元素ID配置
+        selectorProfile = SelectorProfileLoader.load(this);
+        DouyinUIHelper.setSelectorProfile(selectorProfile);
+        
+        workerHandler.postDelayed(metricsExport, METRICS_EXPORT_INTERVAL_MS);
+        
+        // 配置文件中的订阅是连接前的默认值，连接后从空闲状态开始，检测到抖音再扩大订阅
+        subscriptionController.applyMode(SubscriptionController.Mode.IDLE);
+        if (isAutomationEnabled()) {
+            scheduleForegroundCheck(0);
+        }
     }
     
-    private void loadSettings() {
-        SharedPreferences preferences = getSharedPreferences(PREFS_NAME, MODE_PRIVATE);
-        autoLike = preferences.getBoolean(KEY_LIKE, true);
-        autoFollow = preferences.getBoolean(KEY_FOLLOW, false);
-        autoComment = preferences.getBoolean(KEY_COMMENT, false);
-        autoScroll = preferences.getBoolean(KEY_SCROLL, true);
-        
-        String commentsStr = preferences.getString(KEY_COMMENTS, "很棒！\n真不错\n支持一下\n点赞了");
-        commentsList = commentsStr.split("\n");
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+        super.onConfigurationChanged(newConfig);
+        GestureFactory factory = gestureFactory;
+        if (factory != null) {
+            factory.refresh();
+        }
     }
     
-    private void processCurrentScreen() {
-        isProcessing = true;
-        
-        AccessibilityNodeInfo rootNode = getRootInActiveWindow();
-        if (rootNode == null) {
-            isProcessing = false;
-            return;
+    @RequiresApi(api = Build.VERSION_CODES.N)
+    private void createGestures() {
+        gestureDispatcher = new GestureDispatcher(this, workerHandler, MAX_QUEUED_GESTURES);
+        gestureFactory = new GestureFactory(this);
+    }
+    
+    /**
+     * 界面已变化，排队中属于上一个界面的手势不再派发，在工作线程上调用
+     */
+    private void onScreenChanged() {
+        GestureDispatcher dispatcher = gestureDispatcher;
+        if (dispatcher != null) {
+            dispatcher.onScreenChanged();
         }
-        
+    }
+    
+    /**
+     * 检测当前界面并安排操作，在工作线程上执行
+     */
+    private void processCurrentScreen() {
+        long start = System.nanoTime();
+        ServiceMetrics.increment(ServiceMetrics.Counter.SCREENS_PROCESSED);
         try {
-            // 检测当前是否在视频播放界面
-            if (DouyinUIHelper.isInVideoPlayingScreen(rootNode)) {
-                currentVideoCount++;
-                Log.d(TAG, "正在处理第 " + currentVideoCount + " 个视频");
-                
-                // 延迟执行操作，模拟人工操作
-                int delay = 1000 + random.nextInt(2000);
-                
-                // 自动点赞
-                if (autoLike) {
-                    handler.postDelayed(() -> performLikeAction(getRootInActiveWindow()), delay);
-                    delay += 1000 + random.nextInt(1000);
-                }
-                
-                // 自动关注
-                if (autoFollow) {
-                    handler.postDelayed(() -> performFollowAction(getRootInActiveWindow()), delay);
-                    delay += 1000 + random.nextInt(1000);
-                }
-                
-                // 自动评论
-                if (autoComment) {
-                    handler.postDelayed(() -> performCommentAction(getRootInActiveWindow()), delay);
-                    delay += 2000 + random.nextInt(2000);
-                }
-                
-                // 自动滑动到下一个视频
-                if (autoScroll) {
-                    handler.postDelayed(this::scrollToNextVideo, delay + 3000 + random.nextInt(3000));
-                }
-            }
+            processScreen();
         } finally {
-            rootNode.recycle();
-            isProcessing = false;
+            ServiceMetrics.recordSince(ServiceMetrics.Timer.PROCESS_SCREEN, start);
         }
     }
     
-    private void performLikeAction(AccessibilityNodeInfo rootNode) {
-        if (rootNode == null) return;
+    private void processScreen() {
+        // 一次遍历读取界面树，界面检测都在快照上进行，不再逐个ID查询
+        UITreeSnapshot snapshot = captureSnapshot();
+        if (snapshot == null) {
+            return;
+        }
+        ScreenCapture capture = screenCapture;
+        if (capture != null) {
+            capture.recordTree(snapshot);
+        }
         
-        try {
-            // 使用DouyinUIHelper查找点赞按钮
-            AccessibilityNodeInfo likeButton = DouyinUIHelper.findNodeByType(rootNode, "like_button");
-            
-            if (likeButton != null) {
-                likeButton.performAction(AccessibilityNodeInfo.ACTION_CLICK);
-                Log.d(TAG, "已点赞");
-            } else {
-                // 如果找不到点赞按钮，尝试在屏幕右侧进行点击
-                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
-                    Rect windowBounds = new Rect();
-                    rootNode.getBoundsInScreen(windowBounds);
-                    clickAtPosition(windowBounds.width() * 0.9f, windowBounds.height() * 0.4f);
-                    Log.d(TAG, "通过坐标点赞");
-                }
-            }
-        } finally {
-            rootNode.recycle();
+        long decideStart = HelperCallBreakdown.begin();
+        ActionPlanner.Decision decision = actionPlanner.decide(snapshot.getRoot(),
+                DouyinUIHelper.getSelectorProfile(), settings, Build.VERSION.SDK_INT >= Build.VERSION_CODES.N);
+        HelperCallBreakdown.end(HelperCallBreakdown.Call.PLANNER_DECIDE, decideStart);
+        DouyinUIHelper.recordVisited(actionPlanner.getMatcher());
+        
+        // 评论面板打开时订阅更及时的事件，关闭后恢复
+        subscriptionController.requestActiveMode(decision.commentPanelOpen
+                ? SubscriptionController.Mode.COMMENT : SubscriptionController.Mode.FEED);
+        
+        // 切换到其他视频，或离开视频和评论界面，整组取消上一个视频的操作
+        if (decision.cancelActive && activePipeline != null) {
+            ServiceLog.d(TAG, decision.verdict == ActionPlanner.Verdict.START
+                    ? "已切换到其他视频，取消上一个视频的操作" : "界面已变化，取消当前视频的操作");
+            activePipeline.cancel();
+        }
+        if (decision.cancelActive || decision.verdict == ActionPlanner.Verdict.START) {
+            onScreenChanged();
+        }
+        
+        if (decision.verdict == ActionPlanner.Verdict.START) {
+            ServiceLog.d(TAG, "正在处理第 {} 个视频", actionPlanner.getVideoCount());
+            activePipeline = buildVideoPipeline(decision.steps, decision.runId);
+            activePipeline.start();
         }
     }
     
-    private void performFollowAction(AccessibilityNodeInfo rootNode) {
-        if (rootNode == null) return;
+    /**
+     * 把决策出的操作声明为流水线步骤
+     */
+    private ActionPipeline buildVideoPipeline(List<String> steps, final int runId) {
+        ActionPipeline.Builder builder = new ActionPipeline.Builder();
+        ActionPipeline.Precondition inVideo = DouyinUIHelper::isInVideoPlayingScreen;
         
-        try {
-            // 尝试查找关注按钮
-            String[] followButtonTexts = {"关注", "+ 关注"};
-            
-            for (String text : followButtonTexts) {
-                List<AccessibilityNodeInfo> nodes = DouyinUIHelper.findNodesByText(rootNode, text);
-                if (!nodes.isEmpty()) {
-                    nodes.get(0).performAction(AccessibilityNodeInfo.ACTION_CLICK);
-                    Log.d(TAG, "已关注");
-                    return;
-                }
+        // 延迟执行操作，模拟人工操作
+        long delay = 1000 + random.nextInt(2000);
+        
+        // 低电量或发热时跳过开销大的操作
+        ProcessingGovernor.Mode mode = processingMode;
+        for (String step : steps) {
+            if (!mode.allows(step)) {
+                ServiceLog.d(TAG, "处理强度为 {}，跳过 {}", mode, step);
+                continue;
             }
-            
-            // 尝试通过ID查找关注按钮
-            AccessibilityNodeInfo followButton = DouyinUIHelper.findNodeByType(rootNode, "follow_button");
-            if (followButton != null) {
-                followButton.performAction(AccessibilityNodeInfo.ACTION_CLICK);
-                Log.d(TAG, "已通过ID关注");
-            } else {
-                Log.d(TAG, "未找到关注按钮或已关注");
+            switch (step) {
+                case ActionPlanner.STEP_LIKE:
+                    builder.addStep("like", "like", delay, inVideo, this::performLikeAction);
+                    delay = 1000 + random.nextInt(1000);
+                    break;
+                case ActionPlanner.STEP_FOLLOW:
+                    builder.addStep("follow", "follow", delay, inVideo, this::performFollowAction);
+                    delay = 1000 + random.nextInt(1000);
+                    break;
+                case ActionPlanner.STEP_COMMENT:
+                    // 打开评论区、输入、发送、返回，任一步失败则跳过剩余评论步骤
+                    // 输入框和发送按钮出现即继续，不再固定等待
+                    builder.addStep("open_comments", "comment", delay, inVideo, this::openComments)
+                            .addWaitingStep("input_comment", "comment", 300,
+                                    s -> DouyinUIHelper.findNodeByType(s, "comment_edit") != null,
+                                    COMMENT_PANEL_TIMEOUT_MS, this::inputComment)
+                            .addWaitingStep("send_comment", "comment", 200,
+                                    s -> DouyinUIHelper.findNodeByType(s, "send_button") != null,
+                                    SEND_BUTTON_TIMEOUT_MS, this::sendComment)
+                            .addStep("close_comments", "comment", 1000, null,
+                                    s -> performGlobalAction(GLOBAL_ACTION_BACK));
+                    delay = 2000 + random.nextInt(2000);
+                    break;
+                case ActionPlanner.STEP_SCROLL:
+                    // 滑动到下一个视频
+                    builder.addStep("scroll", "scroll", delay + 3000 + random.nextInt(3000), inVideo,
+                            s -> scrollToNextVideo());
+                    break;
             }
-        } finally {
-            rootNode.recycle();
         }
+        
+        return builder.build(workerHandler, this::captureSnapshot, conditionWaiter, (pipeline, cancelled) -> {
+            if (activePipeline == pipeline) {
+                activePipeline = null;
+            }
+            // 已被新视频的操作取代时不影响决策，也不写入录制
+            if (actionPlanner.onRunFinished(runId)) {
+                recordMarker(ScreenRecording.MARKER_RUN_FINISHED);
+            }
+            journal(pipeline);
+            // 缓冲中的参数到导出时才格式化，流水线对象之后还会变化，记录此刻的文本
+            if (ServiceLog.isLoggable(ServiceLog.DEBUG)) {
+                ServiceLog.d(TAG, cancelled ? "操作已取消: {}" : "操作完成: {}", pipeline.toString());
+            }
+        });
     }
     
-    private void performCommentAction(AccessibilityNodeInfo rootNode) {
-        if (rootNode == null) return;
-        
-        try {
-            // 点击评论按钮
-            AccessibilityNodeInfo commentButton = DouyinUIHelper.findNodeByType(rootNode, "comment_button");
-            
-            if (commentButton != null) {
-                commentButton.performAction(AccessibilityNodeInfo.ACTION_CLICK);
-                
-                // 延迟操作，等待评论区加载
-                handler.postDelayed(() -> {
-                    // 点击评论输入框
-                    AccessibilityNodeInfo rootNode2 = getRootInActiveWindow();
-                    if (rootNode2 == null) return;
-                    
-                    try {
-                        AccessibilityNodeInfo commentEdit = DouyinUIHelper.findNodeByType(rootNode2, "comment_edit");
-                        
-                        if (commentEdit != null) {
-                            commentEdit.performAction(AccessibilityNodeInfo.ACTION_CLICK);
-                            
-                            // 随机选择一条评论
-                            String comment = commentsList[random.nextInt(commentsList.length)];
-                            
-                            // 设置评论文本并发送
-                            Bundle arguments = new Bundle();
-                            arguments.putCharSequence(AccessibilityNodeInfo.ACTION_ARGUMENT_SET_TEXT_CHARSEQUENCE, comment);
-                            commentEdit.performAction(AccessibilityNodeInfo.ACTION_SET_TEXT, arguments);
-                            
-                            // 延迟点击发送按钮
-                            handler.postDelayed(() -> {
-                                AccessibilityNodeInfo rootNode3 = getRootInActiveWindow();
-                                if (rootNode3 == null) return;
-                                
-                                try {
-                                    // 查找发送按钮
-                                    AccessibilityNodeInfo sendButton = DouyinUIHelper.findNodeByType(rootNode3, "send_button");
-                                    
-                                    if (sendButton != null) {
-                                        sendButton.performAction(AccessibilityNodeInfo.ACTION_CLICK);
-                                        Log.d(TAG, "已评论: " + comment);
-                                        
-                                        // 评论发送后返回视频
-                                        handler.postDelayed(() -> performGlobalAction(GLOBAL_ACTION_BACK), 1000);
-                                    }
-                                } finally {
-                                    rootNode3.recycle();
-                                }
-                            }, 1000);
-                        }
-                    } finally {
-                        rootNode2.recycle();
-                    }
-                }, 1500);
+    /**
+     * 调试版本把影响决策状态的时间点写入界面录制，回放时据此同步，在工作线程上调用
+     */
+    private void recordMarker(int marker) {
+        ScreenCapture capture = screenCapture;
+        if (capture != null) {
+            capture.recordMarker(marker);
+        }
+    }
+    
+    /**
+     * 把流水线中各步骤的结果写入操作记录，取消时尚未执行的步骤记为已取消
+     */
+    private void journal(ActionPipeline pipeline) {
+        ActionJournal journal = actionJournal;
+        if (journal == null) {
+            return;
+        }
+        for (ActionPipeline.StepRecord record : pipeline.getStepRecords()) {
+            switch (record.result) {
+                case SUCCEEDED:
+                    journal.record(record.name, ActionJournal.Outcome.SUCCEEDED);
+                    break;
+                case FAILED:
+                    journal.record(record.name, ActionJournal.Outcome.FAILED);
+                    break;
+                case SKIPPED:
+                    journal.record(record.name, ActionJournal.Outcome.SKIPPED);
+                    break;
+                case CANCELLED:
+                    journal.record(record.name, ActionJournal.Outcome.CANCELLED);
+                    break;
+                default:
+                    break;
             }
-        } finally {
-            rootNode.recycle();
         }
     }
     
-    @RequiresApi(api = Build.VERSION_CODES.N)
-    private void clickAtPosition(float x, float y) {
-        Path path = new Path();
-        path.moveTo(x, y);
+    /**
+     * 获取抖音目标窗口的界面树快照，窗口不可用时返回null
+     * 快照由treeTracker持有，在下次获取之前有效，调用方不需要回收
+     */
+    private UITreeSnapshot captureSnapshot() {
+        long start = System.nanoTime();
+        if (snapshotInvalidated.getAndSet(false)) {
+            treeTracker.invalidate();
+        }
+        long selectStart = HelperCallBreakdown.begin();
+        AccessibilityNodeInfo root = windowSelector.getTargetRoot();
+        HelperCallBreakdown.end(HelperCallBreakdown.Call.WINDOW_SELECT, selectStart);
+        UITreeSnapshot snapshot = treeTracker.acquire(root);
+        ServiceMetrics.recordSince(ServiceMetrics.Timer.SNAPSHOT_ACQUIRE, start);
+        return snapshot;
+    }
+    
+    private boolean performLikeAction(UITreeSnapshot snapshot) {
+        // 使用DouyinUIHelper查找点赞按钮
+        AccessibilityNodeInfo likeButton = DouyinUIHelper.findNodeByType(snapshot, "like_button");
         
-        GestureDescription.Builder gestureBuilder = new GestureDescription.Builder();
-        gestureBuilder.addStroke(new GestureDescription.StrokeDescription(path, 0, 50));
+        if (likeButton != null) {
+            ServiceLog.d(TAG, "已点赞");
+            return likeButton.performAction(AccessibilityNodeInfo.ACTION_CLICK);
+        }
         
-        dispatchGesture(gestureBuilder.build(), null, null);
+        // 如果找不到点赞按钮，尝试在屏幕右侧进行点击
+        GestureFactory factory = gestureFactory;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N && factory != null) {
+            ServiceLog.d(TAG, "通过坐标点赞");
+            return gestureDispatcher.enqueue("tap", factory.getRightSideTap(), null);
+        }
+        return false;
     }
     
-    @RequiresApi(api = Build.VERSION_CODES.N)
-    private void scrollToNextVideo() {
-        // 获取屏幕尺寸
-        AccessibilityNodeInfo rootNode = getRootInActiveWindow();
-        if (rootNode == null) return;
+    private boolean performFollowAction(UITreeSnapshot snapshot) {
+        // 尝试查找关注按钮
+        String[] followButtonTexts = {"关注", "+ 关注"};
         
-        try {
-            Rect windowBounds = new Rect();
-            rootNode.getBoundsInScreen(windowBounds);
-            
-            int screenHeight = windowBounds.height();
-            int screenWidth = windowBounds.width();
-            
-            // 从屏幕中间底部向上滑动
-            Path path = new Path();
-            path.moveTo(screenWidth / 2, screenHeight * 0.8f);
-            path.lineTo(screenWidth / 2, screenHeight * 0.2f);
-            
-            GestureDescription.Builder gestureBuilder = new GestureDescription.Builder();
-            gestureBuilder.addStroke(new GestureDescription.StrokeDescription(path, 0, 300));
-            
-            dispatchGesture(gestureBuilder.build(), new GestureResultCallback() {
-                @Override
-                public void onCompleted(GestureDescription gestureDescription) {
-                    super.onCompleted(gestureDescription);
-                    Log.d(TAG, "滑动到下一个视频");
-                }
-                
-                @Override
-                public void onCancelled(GestureDescription gestureDescription) {
-                    super.onCancelled(gestureDescription);
-                    Log.d(TAG, "滑动被取消");
-                }
-            }, null);
-        } finally {
-            rootNode.recycle();
+        for (String text : followButtonTexts) {
+            AccessibilityNodeInfo node = DouyinUIHelper.findFirstNodeByText(snapshot, text);
+            if (node != null) {
+                ServiceLog.d(TAG, "已关注");
+                return node.performAction(AccessibilityNodeInfo.ACTION_CLICK);
+            }
+        }
+        
+        // 尝试通过ID查找关注按钮
+        AccessibilityNodeInfo followButton = DouyinUIHelper.findNodeByType(snapshot, "follow_button");
+        if (followButton != null) {
+            ServiceLog.d(TAG, "已通过ID关注");
+            return followButton.performAction(AccessibilityNodeInfo.ACTION_CLICK);
+        }
+        
+        ServiceLog.d(TAG, "未找到关注按钮或已关注");
+        return false;
+    }
+    
+    private boolean openComments(UITreeSnapshot snapshot) {
+        // 点击评论按钮
+        AccessibilityNodeInfo commentButton = DouyinUIHelper.findNodeByType(snapshot, "comment_button");
+        return commentButton != null && commentButton.performAction(AccessibilityNodeInfo.ACTION_CLICK);
+    }
+    
+    private boolean inputComment(UITreeSnapshot snapshot) {
+        // 点击评论输入框
+        AccessibilityNodeInfo commentEdit = DouyinUIHelper.findNodeByType(snapshot, "comment_edit");
+        if (commentEdit == null) return false;
+        
+        commentEdit.performAction(AccessibilityNodeInfo.ACTION_CLICK);
+        
+        // 随机选择一条评论
+        pendingComment = settings.pickComment(random);
+        if (pendingComment == null) return false;
+        
+        // 设置评论文本
+        Bundle arguments = new Bundle();
+        arguments.putCharSequence(AccessibilityNodeInfo.ACTION_ARGUMENT_SET_TEXT_CHARSEQUENCE, pendingComment);
+        return commentEdit.performAction(AccessibilityNodeInfo.ACTION_SET_TEXT, arguments);
+    }
+    
+    private boolean sendComment(UITreeSnapshot snapshot) {
+        // 查找发送按钮
+        AccessibilityNodeInfo sendButton = DouyinUIHelper.findNodeByType(snapshot, "send_button");
+        if (sendButton == null || !sendButton.performAction(AccessibilityNodeInfo.ACTION_CLICK)) {
+            return false;
         }
+        ServiceLog.d(TAG, "已评论: {}", pendingComment);
+        return true;
+    }
+    
+    @RequiresApi(api = Build.VERSION_CODES.N)
+    private boolean scrollToNextVideo() {
+        // 屏幕尺寸已缓存，不需要查询界面树
+        // 滑动完成即已换到下一个视频，即使视频无法计算指纹也可以开始操作；回调在工作线程上执行
+        GestureFactory factory = gestureFactory;
+        return factory != null && gestureDispatcher.enqueue("scroll", factory.getSwipeUp(), (name, outcome) -> {
+            if (outcome == GestureDispatcher.Outcome.COMPLETED) {
+                actionPlanner.onScrolled();
+                recordMarker(ScreenRecording.MARKER_SCROLLED);
+            }
+        });
     }
 }
\ No newline at end of file
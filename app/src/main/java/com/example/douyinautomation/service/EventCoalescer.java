@@ -0,0 +1,182 @@
+package com.example.douyinautomation.service;
+
+import android.os.Handler;
+import android.os.SystemClock;
+import android.util.SparseArray;
+import android.view.accessibility.AccessibilityEvent;
+
+import com.example.douyinautomation.utils.ServiceMetrics;
+
+/**
+ * 无障碍事件合并器
+ *
+ * 按窗口合并静默期内连续到达的事件，过滤只涉及文本、进度等不影响界面结构的变化，
+ * 界面稳定后只向处理逻辑发出一次"界面已稳定"信号。
+ * 所有方法都应在构造时传入的Handler所在线程上调用。
+ */
+public class EventCoalescer {
+
+    /**
+     * 界面稳定回调
+     */
+    public interface OnScreenSettledListener {
+        /**
+         * @param windowId 发生变化的窗口ID
+         * @param windowStateChanged 合并的事件中是否包含窗口状态变化（切换页面、弹出面板等）
+         */
+        void onScreenSettled(int windowId, boolean windowStateChanged);
+    }
+
+    public static final long DEFAULT_QUIET_PERIOD_MS = 300;
+    public static final long DEFAULT_MAX_DELAY_MS = 1500;
+
+    // 只包含这些子类型的内容变化不会改变界面结构（点赞数、弹幕文字、播放状态等）
+    private static final int IGNORED_CHANGE_TYPES = AccessibilityEvent.CONTENT_CHANGE_TYPE_TEXT
+            | AccessibilityEvent.CONTENT_CHANGE_TYPE_CONTENT_DESCRIPTION
+            | AccessibilityEvent.CONTENT_CHANGE_TYPE_STATE_DESCRIPTION;
+
+    // 视频进度条持续刷新，直接丢弃
+    private static final String[] IGNORED_CLASS_NAMES = {"ProgressBar", "SeekBar"};
+
+    private final Handler handler;
+    private final OnScreenSettledListener listener;
+    private final SparseArray<PendingWindow> pendingWindows = new SparseArray<>();
+
+    private long quietPeriodMs = DEFAULT_QUIET_PERIOD_MS;
+    private long maxDelayMs = DEFAULT_MAX_DELAY_MS;
+
+    private long eventsReceived = 0;
+    private long eventsDropped = 0;
+    private long eventsCoalesced = 0;
+    private long signalsEmitted = 0;
+
+    public EventCoalescer(Handler handler, OnScreenSettledListener listener) {
+        this.handler = handler;
+        this.listener = listener;
+    }
+
+    /**
+     * 设置静默期：窗口在该时长内没有新事件即视为稳定
+     */
+    public void setQuietPeriod(long quietPeriodMs) {
+        this.quietPeriodMs = Math.max(0, quietPeriodMs);
+    }
+
+    public long getQuietPeriod() {
+        return quietPeriodMs;
+    }
+
+    /**
+     * 设置最长等待时间，避免界面持续刷新时信号一直无法发出
+     */
+    public void setMaxDelay(long maxDelayMs) {
+        this.maxDelayMs = Math.max(0, maxDelayMs);
+    }
+
+    /**
+     * 接收一个无障碍事件
+     */
+    public void onEvent(AccessibilityEvent event) {
+        eventsReceived++;
+
+        int eventType = event.getEventType();
+        boolean windowStateChanged = eventType == AccessibilityEvent.TYPE_WINDOW_STATE_CHANGED;
+        if (!windowStateChanged && !isRelevantContentChange(event)) {
+            eventsDropped++;
+            ServiceMetrics.increment(ServiceMetrics.Counter.EVENTS_DROPPED);
+            return;
+        }
+
+        int windowId = event.getWindowId();
+        long now = SystemClock.uptimeMillis();
+        PendingWindow pending = pendingWindows.get(windowId);
+        if (pending == null) {
+            pending = new PendingWindow(windowId, now);
+            pendingWindows.put(windowId, pending);
+        } else {
+            eventsCoalesced++;
+            ServiceMetrics.increment(ServiceMetrics.Counter.EVENTS_COALESCED);
+            handler.removeCallbacks(pending);
+        }
+
+        pending.windowStateChanged |= windowStateChanged;
+        long flushAt = Math.min(now + quietPeriodMs, pending.firstEventTime + maxDelayMs);
+        handler.postAtTime(pending, flushAt);
+    }
+
+    /**
+     * 丢弃所有未发出的信号
+     */
+    public void cancel() {
+        for (int i = 0; i < pendingWindows.size(); i++) {
+            handler.removeCallbacks(pendingWindows.valueAt(i));
+        }
+        pendingWindows.clear();
+    }
+
+    public long getEventsReceived() {
+        return eventsReceived;
+    }
+
+    public long getEventsCoalesced() {
+        return eventsCoalesced;
+    }
+
+    public long getEventsDropped() {
+        return eventsDropped;
+    }
+
+    public long getSignalsEmitted() {
+        return signalsEmitted;
+    }
+
+    /**
+     * 统计信息，用于日志输出
+     */
+    public String getStats() {
+        return "收到事件 " + eventsReceived + "，已过滤 " + eventsDropped
+                + "，已合并 " + eventsCoalesced + "，发出信号 " + signalsEmitted;
+    }
+
+    private boolean isRelevantContentChange(AccessibilityEvent event) {
+        if (event.getEventType() != AccessibilityEvent.TYPE_WINDOW_CONTENT_CHANGED) {
+            return false;
+        }
+
+        int changeTypes = event.getContentChangeTypes();
+        if (changeTypes != AccessibilityEvent.CONTENT_CHANGE_TYPE_UNDEFINED
+                && (changeTypes & ~IGNORED_CHANGE_TYPES) == 0) {
+            return false;
+        }
+
+        CharSequence className = event.getClassName();
+        if (className != null) {
+            String name = className.toString();
+            for (String ignored : IGNORED_CLASS_NAMES) {
+                if (name.endsWith(ignored)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private class PendingWindow implements Runnable {
+        final int windowId;
+        final long firstEventTime;
+        boolean windowStateChanged = false;
+
+        PendingWindow(int windowId, long firstEventTime) {
+            this.windowId = windowId;
+            this.firstEventTime = firstEventTime;
+        }
+
+        @Override
+        public void run() {
+            pendingWindows.remove(windowId);
+            signalsEmitted++;
+            ServiceMetrics.increment(ServiceMetrics.Counter.SCREEN_SIGNALS);
+            listener.onScreenSettled(windowId, windowStateChanged);
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package com.example.douyinautomation.service;
+
+import android.accessibilityservice.AccessibilityService;
+import android.accessibilityservice.GestureDescription;
+import android.os.Build;
+import android.os.Handler;
+import android.os.SystemClock;
+
+import androidx.annotation.RequiresApi;
+
+import com.example.douyinautomation.utils.ServiceLog;
+import com.example.douyinautomation.utils.ServiceMetrics;
+
+import java.util.ArrayDeque;
+import java.util.Locale;
+
+/**
+ * 手势派发队列
+ *
+ * 系统同一时间只执行一个手势，新派发的手势会取消正在执行的手势。
+ * 这里把手势排队，上一个手势完成或取消后才派发下一个；
+ * 界面变化时（切换视频、离开抖音）递增界面代数，排队中属于旧界面的手势在派发前丢弃。
+ * 队列已满时拒绝新手势，调用方按操作失败处理，不会无限积压。
+ * 系统回调投递到构造时传入的Handler，所有方法都应在该Handler所在线程上调用。
+ */
+@RequiresApi(api = Build.VERSION_CODES.N)
+public class GestureDispatcher {
+    private static final String TAG = "GestureDispatcher";
+
+    // 手势时长都在几百毫秒以内，超过这个时间没有回调视为丢失，继续派发后面的手势
+    private static final long CALLBACK_TIMEOUT_MS = 3000;
+
+    /**
+     * 手势结果
+     */
+    public enum Outcome {
+        /** 执行完成 */
+        COMPLETED,
+        /** 被系统或其他手势取消 */
+        CANCELLED,
+        /** 系统拒绝派发 */
+        REJECTED,
+        /** 界面已变化，派发前丢弃 */
+        DROPPED,
+        /** 超时未收到回调 */
+        LOST
+    }
+
+    /**
+     * 手势结束回调
+     */
+    public interface Listener {
+        void onGestureFinished(String name, Outcome outcome);
+    }
+
+    /**
+     * 排队中的手势，同时作为系统回调，迟到的回调可以据此识别并忽略
+     */
+    private final class Pending extends AccessibilityService.GestureResultCallback {
+        final String name;
+        final GestureDescription gesture;
+        final Listener listener;
+        final int epoch;
+        final long enqueueTime;
+
+        Pending(String name, GestureDescription gesture, Listener listener, int epoch) {
+            this.name = name;
+            this.gesture = gesture;
+            this.listener = listener;
+            this.epoch = epoch;
+            this.enqueueTime = SystemClock.uptimeMillis();
+        }
+
+        @Override
+        public void onCompleted(GestureDescription gestureDescription) {
+            onInFlightFinished(this, Outcome.COMPLETED);
+        }
+
+        @Override
+        public void onCancelled(GestureDescription gestureDescription) {
+            onInFlightFinished(this, Outcome.CANCELLED);
+        }
+    }
+
+    private final AccessibilityService service;
+    private final Handler handler;
+    private final int maxQueued;
+    private final ArrayDeque<Pending> queue = new ArrayDeque<>();
+    private final Runnable callbackTimeout = this::onCallbackTimeout;
+
+    private Pending inFlight;
+    private int epoch = 0;
+
+    private long enqueuedCount = 0;
+    private long overflowCount = 0;
+    private long dispatchedCount = 0;
+    private long completedCount = 0;
+    private long cancelledCount = 0;
+    private long rejectedCount = 0;
+    private long droppedCount = 0;
+    private long lostCount = 0;
+    private long depthSum = 0;
+    private int maxDepth = 0;
+    private long queueWaitSumMs = 0;
+
+    /**
+     * @param maxQueued 最多排队的手势数（不含正在执行的手势）
+     */
+    public GestureDispatcher(AccessibilityService service, Handler handler, int maxQueued) {
+        this.service = service;
+        this.handler = handler;
+        this.maxQueued = maxQueued;
+    }
+
+    /**
+     * 手势排队，没有正在执行的手势时立即派发
+     *
+     * @param name 手势名，用于日志和统计
+     * @param listener 结束回调，可以为null
+     * @return 是否已接受；队列已满时返回false
+     */
+    public boolean enqueue(String name, GestureDescription gesture, Listener listener) {
+        if (queue.size() >= maxQueued) {
+            overflowCount++;
+            ServiceLog.w(TAG, "手势队列已满，丢弃: {}", name);
+            return false;
+        }
+        queue.addLast(new Pending(name, gesture, listener, epoch));
+        enqueuedCount++;
+        int depth = queue.size() + (inFlight != null ? 1 : 0);
+        depthSum += depth;
+        maxDepth = Math.max(maxDepth, depth);
+        dispatchNext();
+        return true;
+    }
+
+    /**
+     * 界面已变化，排队中的旧手势不再派发。正在执行的手势不受影响
+     */
+    public void onScreenChanged() {
+        epoch++;
+        dispatchNext();
+    }
+
+    /**
+     * 丢弃所有排队中的手势，服务结束时调用
+     */
+    public void clear() {
+        epoch++;
+        while (!queue.isEmpty()) {
+            finish(queue.pollFirst(), Outcome.DROPPED);
+        }
+    }
+
+    private void dispatchNext() {
+        while (inFlight == null && !queue.isEmpty()) {
+            Pending next = queue.pollFirst();
+            if (next.epoch != epoch) {
+                finish(next, Outcome.DROPPED);
+                continue;
+            }
+
+            queueWaitSumMs += SystemClock.uptimeMillis() - next.enqueueTime;
+            if (!service.dispatchGesture(next.gesture, next, handler)) {
+                finish(next, Outcome.REJECTED);
+                continue;
+            }
+            dispatchedCount++;
+            ServiceMetrics.increment(ServiceMetrics.Counter.GESTURES_DISPATCHED);
+            inFlight = next;
+            handler.postDelayed(callbackTimeout, CALLBACK_TIMEOUT_MS);
+        }
+    }
+
+    private void onInFlightFinished(Pending pending, Outcome outcome) {
+        if (pending != inFlight) {
+            // 已超时处理过的手势迟到的回调
+            return;
+        }
+        handler.removeCallbacks(callbackTimeout);
+        inFlight = null;
+        finish(pending, outcome);
+        dispatchNext();
+    }
+
+    private void onCallbackTimeout() {
+        if (inFlight != null) {
+            ServiceLog.w(TAG, "手势超时未收到回调: {}", inFlight.name);
+            onInFlightFinished(inFlight, Outcome.LOST);
+        }
+    }
+
+    private void finish(Pending pending, Outcome outcome) {
+        switch (outcome) {
+            case COMPLETED:
+                completedCount++;
+                ServiceMetrics.increment(ServiceMetrics.Counter.GESTURES_COMPLETED);
+                break;
+            case CANCELLED:
+                cancelledCount++;
+                ServiceMetrics.increment(ServiceMetrics.Counter.GESTURES_CANCELLED);
+                break;
+            case REJECTED:
+                rejectedCount++;
+                ServiceMetrics.increment(ServiceMetrics.Counter.GESTURES_REJECTED);
+                break;
+            case DROPPED:
+                droppedCount++;
+                ServiceMetrics.increment(ServiceMetrics.Counter.GESTURES_DROPPED);
+                break;
+            case LOST:
+                lostCount++;
+                ServiceMetrics.increment(ServiceMetrics.Counter.GESTURES_LOST);
+                break;
+        }
+        ServiceLog.d(TAG, "手势{}: {}", pending.name, outcome);
+        if (pending.listener != null) {
+            pending.listener.onGestureFinished(pending.name, outcome);
+        }
+    }
+
+    /**
+     * 当前排队和执行中的手势数
+     */
+    public int getDepth() {
+        return queue.size() + (inFlight != null ? 1 : 0);
+    }
+
+    public String getStats() {
+        float averageDepth = enqueuedCount > 0 ? (float) depthSum / enqueuedCount : 0;
+        float averageWait = dispatchedCount > 0 ? (float) queueWaitSumMs / dispatchedCount : 0;
+        float cancelRate = dispatchedCount > 0 ? 100f * (cancelledCount + lostCount) / dispatchedCount : 0;
+        return String.format(Locale.ROOT, "排队 %d（队列满 %d，平均深度 %.1f，最大 %d，平均等待 %.0fms），派发 %d，完成 %d，"
+                        + "取消 %d，丢失 %d（取消率 %.1f%%），拒绝 %d，界面变化丢弃 %d",
+                enqueuedCount, overflowCount, averageDepth, maxDepth, averageWait, dispatchedCount, completedCount,
+                cancelledCount, lostCount, cancelRate, rejectedCount, droppedCount);
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.douyinautomation.service;
+
+import android.accessibilityservice.GestureDescription;
+import android.content.Context;
+import android.graphics.Path;
+import android.graphics.Rect;
+import android.os.Build;
+import android.util.DisplayMetrics;
+import android.view.Display;
+import android.view.WindowManager;
+import android.view.WindowMetrics;
+
+import androidx.annotation.RequiresApi;
+
+import com.example.douyinautomation.utils.ServiceLog;
+
+/**
+ * 手势工厂
+ *
+ * 缓存屏幕尺寸，预先构建坐标固定的手势（屏幕右侧点击、上滑到下一个视频），每次派发直接复用，
+ * 不需要查询界面树获取窗口大小，也不再每次创建Path和GestureDescription。
+ * 屏幕尺寸只在配置变化（旋转、折叠屏展开等）时重新读取，尺寸不变时保留原有手势。
+ * 手势在主线程更新、在工作线程读取，两者通过volatile字段交换，读取方总能拿到完整构建的手势。
+ */
+@RequiresApi(api = Build.VERSION_CODES.N)
+public class GestureFactory {
+    private static final String TAG = "GestureFactory";
+
+    // 屏幕右侧点击位置（点赞按钮所在区域），按屏幕宽高比例
+    private static final float TAP_X = 0.9f;
+    private static final float TAP_Y = 0.4f;
+    private static final long TAP_DURATION_MS = 50;
+
+    // 从屏幕中间底部向上滑动
+    private static final float SWIPE_FROM_Y = 0.8f;
+    private static final float SWIPE_TO_Y = 0.2f;
+    private static final long SWIPE_DURATION_MS = 300;
+
+    private final WindowManager windowManager;
+    private final DisplayMetrics metrics = new DisplayMetrics();
+
+    private volatile GestureDescription rightSideTap;
+    private volatile GestureDescription swipeUp;
+    private int width = 0;
+    private int height = 0;
+
+    public GestureFactory(Context context) {
+        windowManager = (WindowManager) context.getSystemService(Context.WINDOW_SERVICE);
+        refresh();
+    }
+
+    /**
+     * 重新读取屏幕尺寸，尺寸变化时重建手势，在配置变化时调用
+     */
+    public void refresh() {
+        // 抖音全屏显示，使用包含系统栏的实际尺寸，与根节点的窗口范围一致
+        int newWidth;
+        int newHeight;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+            // 服务的Context不属于任何窗口，取窗口最大范围，即getRealMetrics()的替代
+            WindowMetrics windowMetrics = windowManager.getMaximumWindowMetrics();
+            Rect bounds = windowMetrics.getBounds();
+            newWidth = bounds.width();
+            newHeight = bounds.height();
+        } else {
+            Display display = windowManager.getDefaultDisplay();
+            display.getRealMetrics(metrics);
+            newWidth = metrics.widthPixels;
+            newHeight = metrics.heightPixels;
+        }
+        if (newWidth == width && newHeight == height) {
+            return;
+        }
+        width = newWidth;
+        height = newHeight;
+
+        rightSideTap = buildTap(width * TAP_X, height * TAP_Y);
+        swipeUp = buildSwipe(width / 2f, height * SWIPE_FROM_Y, height * SWIPE_TO_Y);
+        ServiceLog.d(TAG, "屏幕尺寸: {}x{}", width, height);
+    }
+
+    /**
+     * 屏幕右侧点击，用于找不到点赞按钮时按坐标点赞
+     */
+    public GestureDescription getRightSideTap() {
+        return rightSideTap;
+    }
+
+    /**
+     * 上滑到下一个视频
+     */
+    public GestureDescription getSwipeUp() {
+        return swipeUp;
+    }
+
+    private static GestureDescription buildTap(float x, float y) {
+        Path path = new Path();
+        path.moveTo(x, y);
+        return new GestureDescription.Builder()
+                .addStroke(new GestureDescription.StrokeDescription(path, 0, TAP_DURATION_MS))
+                .build();
+    }
+
+    private static GestureDescription buildSwipe(float x, float fromY, float toY) {
+        Path path = new Path();
+        path.moveTo(x, fromY);
+        path.lineTo(x, toY);
+        return new GestureDescription.Builder()
+                .addStroke(new GestureDescription.StrokeDescription(path, 0, SWIPE_DURATION_MS))
+                .build();
+    }
+}
@@ -0,0 +1,278 @@
+package com.example.douyinautomation.service;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Printer;
+
+import com.example.douyinautomation.utils.HelperCallBreakdown;
+import com.example.douyinautomation.utils.ServiceLog;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 消息循环监控
+ *
+ * 服务的回调和postDelayed任务都跑在主线程和树查询工作线程的消息循环上，一次缓慢的跨进程树查询
+ * 会卡住整个循环而没有任何迹象。这里通过Looper.setMessageLogging()在每条消息前后各收到一行文本，
+ * 据此计算每条消息的耗时：
+ * 超过阈值的消息记录目标Handler和回调、耗时以及这条消息里 {@link HelperCallBreakdown} 的各环节分解；
+ * 消息执行到阈值还没结束时，由单独的监控线程抓取被卡住线程的调用栈，看到的就是卡住的位置。
+ * 只保留最慢的几条记录，服务结束时输出到日志。
+ * 开启后Looper每条消息会拼接两行文本（含Handler和回调的toString），每条消息多几微秒并产生短命的字符串，
+ * 事件密集时两个循环每秒上百条消息，所以只在调试版本开启。
+ * setMessageLogging会替换循环上原有的Printer，服务进程中没有其他地方使用。
+ */
+public class LooperWatchdog {
+    private static final String TAG = "LooperWatchdog";
+
+    // 保留的慢消息条数
+    private static final int MAX_RECORDS = 10;
+    // 抓取的调用栈最多保留的帧数
+    private static final int MAX_STACK_FRAMES = 32;
+
+    private static final String DISPATCH_PREFIX = ">>>>> Dispatching to ";
+
+    /**
+     * 一条慢消息
+     */
+    public static final class SlowDispatch {
+        /** 所在的消息循环 */
+        public final String looper;
+        /** 目标Handler、回调和what，来自Looper输出的文本 */
+        public final String target;
+        public final long durationMs;
+        /** 消息开始时间，System.currentTimeMillis() */
+        public final long time;
+        /** 窗口选择、快照、决策和查找的耗时分解，都没有时为空字符串 */
+        public final String breakdown;
+        /** 执行到阈值时抓取的调用栈，抓取前已结束时为null */
+        public final String stack;
+
+        SlowDispatch(String looper, String target, long durationMs, long time, String breakdown, String stack) {
+            this.looper = looper;
+            this.target = target;
+            this.durationMs = durationMs;
+            this.time = time;
+            this.breakdown = breakdown;
+            this.stack = stack;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder()
+                    .append(looper).append(' ').append(durationMs).append("ms ").append(target);
+            if (!breakdown.isEmpty()) {
+                builder.append("\n  分解: ").append(breakdown);
+            }
+            if (stack != null) {
+                builder.append("\n  调用栈:\n").append(stack);
+            }
+            return builder.toString();
+        }
+    }
+
+    /**
+     * 一个消息循环的监控，println在该循环的线程上调用，stallCheck在监控线程上执行
+     */
+    private final class Monitor implements Printer {
+        final String name;
+        final Looper looper;
+        final Thread thread;
+        final long thresholdMs;
+        final Runnable stallCheck = this::captureStall;
+
+        // 当前消息的序号，开始和结束时各加一，奇数表示消息正在执行
+        volatile int sequence = 0;
+        // 以下只在循环线程上访问
+        String target;
+        long startTime;
+        long startWallTime;
+
+        // 监控线程抓取的调用栈及对应的消息序号
+        volatile String stalledStack;
+        volatile int stalledSequence = -1;
+
+        // 以下只在循环线程上访问
+        long dispatches = 0;
+        long slowDispatches = 0;
+        long totalMs = 0;
+        long maxMs = 0;
+
+        Monitor(String name, Looper looper, long thresholdMs) {
+            this.name = name;
+            this.looper = looper;
+            this.thread = looper.getThread();
+            this.thresholdMs = thresholdMs;
+        }
+
+        @Override
+        public void println(String line) {
+            if (line.startsWith(">")) {
+                onDispatchStart(line);
+            } else if (line.startsWith("<")) {
+                onDispatchEnd();
+            }
+        }
+
+        private void onDispatchStart(String line) {
+            target = line;
+            startTime = SystemClock.uptimeMillis();
+            startWallTime = System.currentTimeMillis();
+            HelperCallBreakdown.reset();
+            sequence++;
+            watchdogHandler.postAtTime(stallCheck, this, startTime + thresholdMs);
+        }
+
+        private void onDispatchEnd() {
+            if ((sequence & 1) == 0) {
+                // 安装时正在执行的消息，没有开始时间
+                return;
+            }
+            int finished = sequence++;
+            watchdogHandler.removeCallbacks(stallCheck, this);
+            long duration = SystemClock.uptimeMillis() - startTime;
+            dispatches++;
+            totalMs += duration;
+            maxMs = Math.max(maxMs, duration);
+            if (duration < thresholdMs) {
+                return;
+            }
+
+            slowDispatches++;
+            String stack = stalledSequence == finished ? stalledStack : null;
+            String shortTarget = target.startsWith(DISPATCH_PREFIX) ? target.substring(DISPATCH_PREFIX.length()) : target;
+            SlowDispatch record = new SlowDispatch(name, shortTarget, duration, startWallTime,
+                    HelperCallBreakdown.describe(), stack);
+            ServiceLog.w(TAG, "慢消息: {}", record);
+            addRecord(record);
+        }
+
+        /**
+         * 消息执行到阈值还没结束，抓取循环线程的调用栈
+         */
+        private void captureStall() {
+            int current = sequence;
+            if ((current & 1) == 0) {
+                return;
+            }
+            String stack = formatStack(thread.getStackTrace());
+            // 抓取期间消息已结束，调用栈属于之后的消息，丢弃
+            if (sequence != current) {
+                return;
+            }
+            stalledStack = stack;
+            stalledSequence = current;
+            ServiceLog.w(TAG, "{}卡住超过{}ms:\n{}", name, thresholdMs, stack);
+        }
+
+        String getStats() {
+            long average = dispatches > 0 ? totalMs / dispatches : 0;
+            return name + " 消息 " + dispatches + " 条，平均 " + average + "ms，最长 " + maxMs
+                    + "ms，超过" + thresholdMs + "ms的 " + slowDispatches + " 条";
+        }
+    }
+
+    private final HandlerThread watchdogThread;
+    private final Handler watchdogHandler;
+    private final List<Monitor> monitors = new ArrayList<>();
+    // 按耗时从长到短排列，多个循环线程写入
+    private final List<SlowDispatch> slowest = new ArrayList<>();
+
+    public LooperWatchdog() {
+        watchdogThread = new HandlerThread("LooperWatchdog", Process.THREAD_PRIORITY_BACKGROUND);
+        watchdogThread.start();
+        watchdogHandler = new Handler(watchdogThread.getLooper());
+    }
+
+    /**
+     * 开始监控一个消息循环
+     *
+     * @param name 用于日志和报告的名称
+     * @param thresholdMs 超过这个时长的消息记为慢消息，执行到这个时长时抓取调用栈
+     */
+    public synchronized void watch(String name, Looper looper, long thresholdMs) {
+        Monitor monitor = new Monitor(name, looper, thresholdMs);
+        monitors.add(monitor);
+        HelperCallBreakdown.setEnabled(true);
+        looper.setMessageLogging(monitor);
+    }
+
+    /**
+     * 停止监控所有消息循环并退出监控线程，可以在任意线程调用
+     */
+    public synchronized void stop() {
+        for (Monitor monitor : monitors) {
+            monitor.looper.setMessageLogging(null);
+        }
+        HelperCallBreakdown.setEnabled(false);
+        watchdogHandler.removeCallbacksAndMessages(null);
+        watchdogThread.quitSafely();
+    }
+
+    private void addRecord(SlowDispatch record) {
+        synchronized (slowest) {
+            int index = 0;
+            while (index < slowest.size() && slowest.get(index).durationMs >= record.durationMs) {
+                index++;
+            }
+            if (index >= MAX_RECORDS) {
+                return;
+            }
+            slowest.add(index, record);
+            if (slowest.size() > MAX_RECORDS) {
+                slowest.remove(slowest.size() - 1);
+            }
+        }
+    }
+
+    /**
+     * 最慢的几条消息，按耗时从长到短
+     */
+    public List<SlowDispatch> getSlowest() {
+        synchronized (slowest) {
+            return Collections.unmodifiableList(new ArrayList<>(slowest));
+        }
+    }
+
+    /**
+     * 各消息循环的统计，只是近似值：计数在各自的循环线程上更新，这里不加锁读取
+     */
+    public synchronized String getStats() {
+        StringBuilder builder = new StringBuilder();
+        for (Monitor monitor : monitors) {
+            if (builder.length() > 0) {
+                builder.append("；");
+            }
+            builder.append(monitor.getStats());
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 统计和最慢的几条消息，服务结束时写入日志
+     */
+    public String getReport() {
+        StringBuilder builder = new StringBuilder(getStats());
+        for (SlowDispatch record : getSlowest()) {
+            builder.append('\n').append(record);
+        }
+        return builder.toString();
+    }
+
+    private static String formatStack(StackTraceElement[] frames) {
+        StringBuilder builder = new StringBuilder();
+        int count = Math.min(frames.length, MAX_STACK_FRAMES);
+        for (int i = 0; i < count; i++) {
+            builder.append("    at ").append(frames[i]).append('\n');
+        }
+        if (frames.length > count) {
+            builder.append("    ... ").append(frames.length - count).append(" more\n");
+        }
+        return builder.toString();
+    }
+}
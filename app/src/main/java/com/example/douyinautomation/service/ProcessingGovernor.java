@@ -0,0 +1,257 @@
+package com.example.douyinautomation.service;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.BatteryManager;
+import android.os.Build;
+import android.os.PowerManager;
+import android.os.SystemClock;
+
+import com.example.douyinautomation.utils.ActionPlanner;
+import com.example.douyinautomation.utils.ServiceLog;
+
+/**
+ * 处理强度调节
+ *
+ * 根据屏幕状态、电量和设备温度决定服务的处理强度：
+ * 屏幕关闭、电量极低或设备过热时暂停；电量低或设备发热时只保留基本操作并延长事件合并的静默期；
+ * 省电模式或电量偏低时跳过开销大的操作。取各项条件中最严格的一档。
+ * 记录在每一档上停留的时间，用于评估实际的节能效果。
+ * 所有方法都应在主线程上调用，广播和温度回调也在主线程上投递；{@link #getMode()} 可以在任意线程读取。
+ */
+public class ProcessingGovernor {
+    private static final String TAG = "ProcessingGovernor";
+
+    // 未充电时的电量阈值（百分比）
+    private static final int BATTERY_PAUSE_PERCENT = 5;
+    private static final int BATTERY_MINIMAL_PERCENT = 15;
+    private static final int BATTERY_CONSERVE_PERCENT = 30;
+
+    /**
+     * 处理强度，按从宽到严排列
+     */
+    public enum Mode {
+        /** 正常处理 */
+        NORMAL(1),
+        /** 跳过评论（需要打开面板、等待输入框，开销最大），事件合并静默期加倍 */
+        CONSERVE(2),
+        /** 只点赞和滑动，事件合并静默期为正常的4倍 */
+        MINIMAL(4),
+        /** 暂停处理，只保留最少的事件订阅 */
+        PAUSED(4);
+
+        /** 事件合并静默期和最长等待时间的倍数 */
+        public final int coalesceScale;
+
+        Mode(int coalesceScale) {
+            this.coalesceScale = coalesceScale;
+        }
+
+        /**
+         * 这一档是否执行指定操作，点赞和滑动是基本操作，除暂停外始终执行
+         *
+         * @param step {@link ActionPlanner} 中的操作名
+         */
+        public boolean allows(String step) {
+            switch (step) {
+                case ActionPlanner.STEP_COMMENT:
+                    return this == NORMAL;
+                case ActionPlanner.STEP_FOLLOW:
+                    return this == NORMAL || this == CONSERVE;
+                default:
+                    return this != PAUSED;
+            }
+        }
+    }
+
+    /**
+     * 处理强度变化回调
+     */
+    public interface Listener {
+        void onModeChanged(Mode oldMode, Mode newMode);
+    }
+
+    private static final Mode[] MODES = Mode.values();
+
+    private final Context context;
+    private final Listener listener;
+    private final PowerManager powerManager;
+
+    private final BroadcastReceiver receiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            String action = intent.getAction();
+            if (Intent.ACTION_SCREEN_ON.equals(action)) {
+                screenOn = true;
+            } else if (Intent.ACTION_SCREEN_OFF.equals(action)) {
+                screenOn = false;
+            } else if (Intent.ACTION_BATTERY_CHANGED.equals(action)) {
+                readBattery(intent);
+            } else if (PowerManager.ACTION_POWER_SAVE_MODE_CHANGED.equals(action)) {
+                powerSave = powerManager.isPowerSaveMode();
+            }
+            update();
+        }
+    };
+
+    // Android 10及以上才有温度状态，低版本不注册
+    private PowerManager.OnThermalStatusChangedListener thermalListener;
+
+    private boolean started = false;
+    private boolean screenOn = true;
+    private boolean powerSave = false;
+    private boolean charging = false;
+    private int batteryPercent = 100;
+    private int thermalStatus = 0;
+
+    private volatile Mode mode = Mode.NORMAL;
+    private long modeStartTime = SystemClock.elapsedRealtime();
+    private final long[] timeInMode = new long[MODES.length];
+    private int modeChanges = 0;
+
+    public ProcessingGovernor(Context context, Listener listener) {
+        this.context = context;
+        this.listener = listener;
+        this.powerManager = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
+    }
+
+    /**
+     * 读取当前状态并开始监听变化
+     */
+    public void start() {
+        if (started) {
+            return;
+        }
+        started = true;
+
+        screenOn = powerManager.isInteractive();
+        powerSave = powerManager.isPowerSaveMode();
+
+        IntentFilter filter = new IntentFilter();
+        filter.addAction(Intent.ACTION_SCREEN_ON);
+        filter.addAction(Intent.ACTION_SCREEN_OFF);
+        filter.addAction(Intent.ACTION_BATTERY_CHANGED);
+        filter.addAction(PowerManager.ACTION_POWER_SAVE_MODE_CHANGED);
+        // 电量广播是粘性的，注册时直接返回最近一次的电量
+        Intent battery = context.registerReceiver(receiver, filter);
+        if (battery != null) {
+            readBattery(battery);
+        }
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            thermalStatus = powerManager.getCurrentThermalStatus();
+            thermalListener = status -> {
+                thermalStatus = status;
+                update();
+            };
+            powerManager.addThermalStatusListener(thermalListener);
+        }
+        update();
+    }
+
+    /**
+     * 停止监听
+     */
+    public void stop() {
+        if (!started) {
+            return;
+        }
+        started = false;
+        context.unregisterReceiver(receiver);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q && thermalListener != null) {
+            powerManager.removeThermalStatusListener(thermalListener);
+            thermalListener = null;
+        }
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public boolean isPaused() {
+        return mode == Mode.PAUSED;
+    }
+
+    private void readBattery(Intent intent) {
+        int level = intent.getIntExtra(BatteryManager.EXTRA_LEVEL, -1);
+        int scale = intent.getIntExtra(BatteryManager.EXTRA_SCALE, -1);
+        if (level >= 0 && scale > 0) {
+            batteryPercent = level * 100 / scale;
+        }
+        int status = intent.getIntExtra(BatteryManager.EXTRA_STATUS, -1);
+        charging = status == BatteryManager.BATTERY_STATUS_CHARGING || status == BatteryManager.BATTERY_STATUS_FULL;
+    }
+
+    private Mode evaluate() {
+        if (!screenOn) {
+            return Mode.PAUSED;
+        }
+
+        Mode result = Mode.NORMAL;
+        if (thermalStatus >= PowerManager.THERMAL_STATUS_SEVERE) {
+            return Mode.PAUSED;
+        } else if (thermalStatus >= PowerManager.THERMAL_STATUS_MODERATE) {
+            result = Mode.MINIMAL;
+        } else if (thermalStatus >= PowerManager.THERMAL_STATUS_LIGHT) {
+            result = Mode.CONSERVE;
+        }
+
+        if (!charging) {
+            if (batteryPercent <= BATTERY_PAUSE_PERCENT) {
+                return Mode.PAUSED;
+            } else if (batteryPercent <= BATTERY_MINIMAL_PERCENT) {
+                result = stricter(result, Mode.MINIMAL);
+            } else if (batteryPercent <= BATTERY_CONSERVE_PERCENT) {
+                result = stricter(result, Mode.CONSERVE);
+            }
+        }
+
+        if (powerSave) {
+            result = stricter(result, Mode.CONSERVE);
+        }
+        return result;
+    }
+
+    private static Mode stricter(Mode a, Mode b) {
+        return a.ordinal() >= b.ordinal() ? a : b;
+    }
+
+    private void update() {
+        Mode newMode = evaluate();
+        if (newMode == mode) {
+            return;
+        }
+
+        long now = SystemClock.elapsedRealtime();
+        timeInMode[mode.ordinal()] += now - modeStartTime;
+        modeStartTime = now;
+        modeChanges++;
+
+        Mode oldMode = mode;
+        mode = newMode;
+        if (ServiceLog.isLoggable(ServiceLog.DEBUG)) {
+            ServiceLog.d(TAG, "处理强度 {} -> {}，{}", oldMode, newMode, describeInputs());
+        }
+        listener.onModeChanged(oldMode, newMode);
+    }
+
+    private String describeInputs() {
+        return "屏幕" + (screenOn ? "亮" : "灭") + "，电量 " + batteryPercent + "%" + (charging ? "（充电中）" : "")
+                + (powerSave ? "，省电模式" : "") + "，温度状态 " + thermalStatus;
+    }
+
+    /**
+     * 各档停留时间统计
+     */
+    public String getStats() {
+        long now = SystemClock.elapsedRealtime();
+        StringBuilder builder = new StringBuilder("切换 ").append(modeChanges).append(" 次");
+        for (Mode m : MODES) {
+            long time = timeInMode[m.ordinal()] + (m == mode ? now - modeStartTime : 0);
+            builder.append("，").append(m).append(' ').append(time / 1000).append('s');
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,182 @@
+package com.example.douyinautomation.service;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.os.SystemClock;
+import android.view.accessibility.AccessibilityEvent;
+
+import com.example.douyinautomation.utils.MemoryUINode;
+import com.example.douyinautomation.utils.ScreenRecording;
+import com.example.douyinautomation.utils.ServiceLog;
+import com.example.douyinautomation.utils.UITreeSnapshot;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * 界面录制（仅调试模式启用）
+ *
+ * 把服务收到的事件、处理过的界面树以及操作结束和滑动完成的标记写入录制文件（格式见 {@link ScreenRecording}），
+ * 拷贝到电脑上后可以用replay模块离线回放。
+ * 事件在主线程、界面树在工作线程上复制，写文件在单独的线程上进行，不阻塞事件处理。
+ * 单个文件超过上限后换新文件，只保留最近的几个文件。
+ */
+public class ScreenCapture {
+    private static final String TAG = "ScreenCapture";
+
+    private static final String FILE_PREFIX = "capture-";
+    private static final String FILE_SUFFIX = ".dyrec";
+    private static final int MAX_FILE_BYTES = 16 * 1024 * 1024;
+    private static final int MAX_FILES = 4;
+
+    private final File directory;
+    private final HandlerThread thread;
+    private final Handler handler;
+
+    // 以下只在录制线程上访问
+    private ScreenRecording.Writer writer;
+
+    /**
+     * @param directory 录制文件目录
+     */
+    public ScreenCapture(File directory) {
+        this.directory = directory;
+        thread = new HandlerThread("ScreenCapture", Process.THREAD_PRIORITY_BACKGROUND);
+        thread.start();
+        handler = new Handler(thread.getLooper());
+    }
+
+    /**
+     * 录制一个事件，在主线程上调用
+     */
+    public void recordEvent(AccessibilityEvent event) {
+        final long time = SystemClock.uptimeMillis();
+        final ScreenRecording.Event recorded = new ScreenRecording.Event(
+                event.getEventType(),
+                event.getWindowId(),
+                event.getContentChangeTypes(),
+                toStringOrNull(event.getPackageName()),
+                toStringOrNull(event.getClassName()));
+        handler.post(() -> {
+            ScreenRecording.Writer w = ensureWriter();
+            if (w != null) {
+                try {
+                    w.writeEvent(time, recorded);
+                } catch (IOException e) {
+                    fail(e);
+                }
+            }
+        });
+    }
+
+    /**
+     * 录制一棵界面树，在持有快照的线程上调用，快照先复制再交给录制线程
+     */
+    public void recordTree(UITreeSnapshot snapshot) {
+        final long time = SystemClock.uptimeMillis();
+        final int windowId = snapshot.getWindowId();
+        final MemoryUINode tree = MemoryUINode.copyOf(snapshot.getRoot());
+        handler.post(() -> {
+            ScreenRecording.Writer w = ensureWriter();
+            if (w != null) {
+                try {
+                    w.writeTree(time, windowId, tree);
+                    // 界面树是回放的主要内容，写完立即落盘
+                    w.flush();
+                    if (w.size() >= MAX_FILE_BYTES) {
+                        closeWriter();
+                    }
+                } catch (IOException e) {
+                    fail(e);
+                }
+            }
+        });
+    }
+
+    /**
+     * 录制一个标记，在工作线程上调用
+     *
+     * @param marker ScreenRecording.MARKER_*
+     */
+    public void recordMarker(final int marker) {
+        final long time = SystemClock.uptimeMillis();
+        handler.post(() -> {
+            ScreenRecording.Writer w = ensureWriter();
+            if (w != null) {
+                try {
+                    w.writeMarker(time, marker);
+                } catch (IOException e) {
+                    fail(e);
+                }
+            }
+        });
+    }
+
+    /**
+     * 写完已排队的记录后关闭文件并退出录制线程
+     */
+    public void close() {
+        handler.post(this::closeWriter);
+        thread.quitSafely();
+    }
+
+    private ScreenRecording.Writer ensureWriter() {
+        if (writer != null) {
+            return writer;
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            ServiceLog.w(TAG, "无法创建录制目录: {}", directory);
+            return null;
+        }
+        deleteOldFiles();
+
+        File file = new File(directory, FILE_PREFIX + System.currentTimeMillis() + FILE_SUFFIX);
+        try {
+            writer = new ScreenRecording.Writer(new BufferedOutputStream(new FileOutputStream(file)));
+            ServiceLog.d(TAG, "开始录制: {}", file);
+        } catch (IOException e) {
+            ServiceLog.w(TAG, "创建录制文件失败", e);
+        }
+        return writer;
+    }
+
+    /**
+     * 新文件创建前删除最旧的文件，保证总数不超过上限
+     */
+    private void deleteOldFiles() {
+        File[] files = directory.listFiles((dir, name) -> name.startsWith(FILE_PREFIX) && name.endsWith(FILE_SUFFIX));
+        if (files == null || files.length < MAX_FILES) {
+            return;
+        }
+        // 文件名带创建时间，按名称排序即按时间排序
+        Arrays.sort(files);
+        for (int i = 0; i <= files.length - MAX_FILES; i++) {
+            files[i].delete();
+        }
+    }
+
+    private void closeWriter() {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.close();
+        } catch (IOException e) {
+            ServiceLog.w(TAG, "关闭录制文件失败", e);
+        }
+        writer = null;
+    }
+
+    private void fail(IOException e) {
+        ServiceLog.w(TAG, "写入录制文件失败", e);
+        closeWriter();
+    }
+
+    private static String toStringOrNull(CharSequence value) {
+        return value != null ? value.toString() : null;
+    }
+}
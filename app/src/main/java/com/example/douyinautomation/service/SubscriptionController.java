@@ -0,0 +1,155 @@
+package com.example.douyinautomation.service;
+
+import android.accessibilityservice.AccessibilityService;
+import android.accessibilityservice.AccessibilityServiceInfo;
+import android.os.Handler;
+import android.os.SystemClock;
+import android.view.accessibility.AccessibilityEvent;
+
+import com.example.douyinautomation.utils.ServiceLog;
+
+/**
+ * 事件订阅控制
+ *
+ * 根据服务当前所处的状态，通过setServiceInfo动态调整订阅的事件类型、包名过滤、
+ * 通知间隔和标志位，不在抖音中或所有功能关闭时只订阅最少的事件。
+ * 每次切换时输出上一个状态下的事件量，便于比较各状态的开销。
+ * {@link #requestMode} 可在任意线程调用，实际切换在主线程上进行。
+ */
+public class SubscriptionController {
+    private static final String TAG = "SubscriptionController";
+
+    /**
+     * 服务状态
+     */
+    public enum Mode {
+        /** 不在抖音或所有功能关闭：只关注窗口切换 */
+        IDLE,
+        /** 在抖音视频流中 */
+        FEED,
+        /** 评论面板打开，需要更及时的内容变化事件，以及输入法的窗口变化 */
+        COMMENT
+    }
+
+    private static final int WINDOW_EVENTS = AccessibilityEvent.TYPE_WINDOW_STATE_CHANGED
+            | AccessibilityEvent.TYPE_WINDOWS_CHANGED;
+
+    private static final int FEED_EVENTS = WINDOW_EVENTS
+            | AccessibilityEvent.TYPE_WINDOW_CONTENT_CHANGED
+            | AccessibilityEvent.TYPE_VIEW_SCROLLED;
+
+    private static final int BASE_FLAGS = AccessibilityServiceInfo.DEFAULT
+            | AccessibilityServiceInfo.FLAG_REPORT_VIEW_IDS
+            | AccessibilityServiceInfo.FLAG_RETRIEVE_INTERACTIVE_WINDOWS;
+
+    private final AccessibilityService service;
+    private final Handler mainHandler;
+    private final String targetPackage;
+
+    private volatile Mode mode = null;
+    private long modeStartTime = 0;
+    private long eventsInMode = 0;
+
+    /**
+     * @param service 无障碍服务
+     * @param mainHandler 主线程Handler
+     * @param targetPackage 视频流状态下只订阅该包的事件
+     */
+    public SubscriptionController(AccessibilityService service, Handler mainHandler, String targetPackage) {
+        this.service = service;
+        this.mainHandler = mainHandler;
+        this.targetPackage = targetPackage;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * 统计收到的事件，在主线程的onAccessibilityEvent开头调用
+     */
+    public void onEventReceived() {
+        eventsInMode++;
+    }
+
+    /**
+     * 请求切换状态，可在任意线程调用
+     */
+    public void requestMode(final Mode newMode) {
+        if (mode == newMode) {
+            return;
+        }
+        mainHandler.post(() -> applyMode(newMode));
+    }
+
+    /**
+     * 在视频流和评论状态之间切换，当前为空闲状态（或切换前已变为空闲）时忽略。可在任意线程调用
+     * 用于工作线程根据界面检测结果调整订阅，避免覆盖主线程刚做出的空闲切换
+     */
+    public void requestActiveMode(final Mode newMode) {
+        if (mode == newMode || mode == null || mode == Mode.IDLE) {
+            return;
+        }
+        mainHandler.post(() -> {
+            if (mode != null && mode != Mode.IDLE) {
+                applyMode(newMode);
+            }
+        });
+    }
+
+    /**
+     * 立即切换状态，只能在主线程调用
+     */
+    public void applyMode(Mode newMode) {
+        if (mode == newMode) {
+            return;
+        }
+
+        AccessibilityServiceInfo info = service.getServiceInfo();
+        if (info == null) {
+            // 服务尚未连接或已断开
+            return;
+        }
+        configure(info, newMode);
+        service.setServiceInfo(info);
+
+        long now = SystemClock.uptimeMillis();
+        if (mode != null) {
+            long duration = Math.max(1, now - modeStartTime);
+            // 参数较多，切换不频繁，直接拼接
+            if (ServiceLog.isLoggable(ServiceLog.DEBUG)) {
+                ServiceLog.d(TAG, mode + " -> " + newMode + "：" + mode + " 状态持续 " + duration + "ms，收到事件 "
+                        + eventsInMode + "，平均 " + (eventsInMode * 1000 / duration) + " 个/秒");
+            }
+        }
+        mode = newMode;
+        modeStartTime = now;
+        eventsInMode = 0;
+    }
+
+    private void configure(AccessibilityServiceInfo info, Mode mode) {
+        switch (mode) {
+            case IDLE:
+                // 需要感知进入抖音，不能按包名过滤
+                info.eventTypes = WINDOW_EVENTS;
+                info.packageNames = null;
+                info.notificationTimeout = 500;
+                info.flags = BASE_FLAGS;
+                break;
+            case FEED:
+                info.eventTypes = FEED_EVENTS;
+                info.packageNames = new String[]{targetPackage};
+                info.notificationTimeout = 100;
+                info.flags = BASE_FLAGS | AccessibilityServiceInfo.FLAG_INCLUDE_NOT_IMPORTANT_VIEWS;
+                break;
+            case COMMENT:
+                // 事件类型与视频流相同，只缩短通知间隔
+                info.eventTypes = FEED_EVENTS;
+                // 输入法的窗口变化不属于抖音，按包名过滤会收不到，目标窗口的选择就会过期
+                info.packageNames = null;
+                info.notificationTimeout = 50;
+                info.flags = BASE_FLAGS | AccessibilityServiceInfo.FLAG_INCLUDE_NOT_IMPORTANT_VIEWS;
+                break;
+        }
+    }
+}
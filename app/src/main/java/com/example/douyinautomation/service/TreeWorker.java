@@ -0,0 +1,98 @@
+package com.example.douyinautomation.service;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 界面树工作线程
+ *
+ * 所有跨进程的树查询、界面检测和操作执行都在这个线程上进行，
+ * 主线程只负责接收事件，不会被慢查询阻塞。
+ * 立即执行的任务有队列上限，超出时直接拒绝，由调用方决定合并或丢弃；
+ * 延迟执行的任务通过 {@link #getHandler()} 调度。
+ */
+public class TreeWorker {
+
+    private final HandlerThread thread;
+    private final Handler handler;
+    private final int maxQueued;
+
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicLong rejected = new AtomicLong();
+
+    /**
+     * @param name 线程名
+     * @param maxQueued 立即执行任务的队列上限
+     */
+    public TreeWorker(String name, int maxQueued) {
+        this.maxQueued = maxQueued;
+        thread = new HandlerThread(name, Process.THREAD_PRIORITY_DEFAULT);
+        thread.start();
+        handler = new Handler(thread.getLooper());
+    }
+
+    /**
+     * 提交一个立即执行的任务
+     *
+     * @return 是否已加入队列，队列已满时返回false
+     */
+    public boolean submit(final Runnable task) {
+        if (queued.incrementAndGet() > maxQueued) {
+            queued.decrementAndGet();
+            rejected.incrementAndGet();
+            return false;
+        }
+
+        boolean posted = handler.post(() -> {
+            queued.decrementAndGet();
+            task.run();
+        });
+        if (!posted) {
+            // 线程已退出
+            queued.decrementAndGet();
+        }
+        return posted;
+    }
+
+    /**
+     * 工作线程的Handler，用于调度延迟任务，任务不计入队列上限
+     */
+    public Handler getHandler() {
+        return handler;
+    }
+
+    public Looper getLooper() {
+        return thread.getLooper();
+    }
+
+    /**
+     * 因队列已满被拒绝的任务数
+     */
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    /**
+     * 取消所有尚未执行的任务
+     */
+    public void cancelAll() {
+        handler.removeCallbacksAndMessages(null);
+        queued.set(0);
+    }
+
+    /**
+     * 取消剩余任务，执行finalTask（用于释放线程上持有的资源）后退出线程
+     */
+    public void shutdown(Runnable finalTask) {
+        cancelAll();
+        if (finalTask != null) {
+            handler.post(finalTask);
+        }
+        thread.quitSafely();
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.douyinautomation.service;
+
+import android.accessibilityservice.AccessibilityService;
+import android.os.Build;
+import android.text.TextUtils;
+import android.view.accessibility.AccessibilityNodeInfo;
+import android.view.accessibility.AccessibilityWindowInfo;
+
+import com.example.douyinautomation.utils.NodeScope;
+import com.example.douyinautomation.utils.ServiceLog;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 目标窗口选择
+ *
+ * 配置中已声明flagRetrieveInteractiveWindows，可以通过getWindows()拿到屏幕上所有可交互的窗口。
+ * 悬浮窗、输入法或其他应用的对话框处于活动状态时，getRootInActiveWindow()返回的不是抖音的界面树，
+ * 查找会落空并退回到坐标点击。这里只在抖音自己的应用窗口中选择：
+ * 输入法显示时选择有输入焦点的抖音窗口（评论面板），否则选择最上层的抖音窗口。
+ * 选中的窗口缓存到窗口列表变化（TYPE_WINDOWS_CHANGED或窗口状态变化）或下一次前台检查为止，
+ * 期间每次只取该窗口的根节点。
+ * 找不到抖音窗口时退回到活动窗口。
+ * 获取的根节点都经由 {@link NodeScope}，调试版本的泄漏检测能看到它们；返回的根节点移出作用域交给调用方。
+ * {@link #invalidate()} 可以在任意线程调用，其他方法只在工作线程上调用。
+ */
+public class WindowSelector {
+    private static final String TAG = "WindowSelector";
+
+    private final AccessibilityService service;
+    private final String packageName;
+    private final AtomicBoolean invalidated = new AtomicBoolean(true);
+    // 获取的根节点在返回或回收之前由它持有
+    private final NodeScope scope = new NodeScope();
+
+    // 以下只在工作线程上访问
+    private AccessibilityWindowInfo targetWindow;
+    private boolean imeVisible = false;
+    // 输入法显示时有输入焦点的窗口优先，其次是层级更高的窗口
+    private final Comparator<AccessibilityWindowInfo> preference = (a, b) -> {
+        if (imeVisible && a.isFocused() != b.isFocused()) {
+            return a.isFocused() ? -1 : 1;
+        }
+        return Integer.compare(b.getLayer(), a.getLayer());
+    };
+
+    private long selections = 0;
+    private long cacheHits = 0;
+    private long fallbacks = 0;
+    private long windowsScanned = 0;
+    private long rootsFetched = 0;
+
+    /**
+     * @param packageName 目标应用包名
+     */
+    public WindowSelector(AccessibilityService service, String packageName) {
+        this.service = service;
+        this.packageName = packageName;
+    }
+
+    /**
+     * 窗口列表已变化，下次获取根节点时重新选择
+     */
+    public void invalidate() {
+        invalidated.set(true);
+    }
+
+    /**
+     * 获取目标窗口的根节点，调用方负责回收（通常交给快照的作用域）
+     *
+     * @return 根节点，没有可用窗口时返回null
+     */
+    public AccessibilityNodeInfo getTargetRoot() {
+        AccessibilityNodeInfo root = null;
+        if (invalidated.getAndSet(false)) {
+            root = select();
+        } else if (targetWindow != null) {
+            root = scope.track(targetWindow.getRoot());
+            if (root != null) {
+                cacheHits++;
+            } else {
+                // 窗口已关闭但还没收到窗口变化事件
+                root = select();
+            }
+        }
+        if (root == null) {
+            fallbacks++;
+            root = scope.track(service.getRootInActiveWindow());
+        }
+        return scope.detach(root);
+    }
+
+    /**
+     * 释放缓存的窗口，服务结束时调用
+     */
+    public void release() {
+        if (targetWindow != null) {
+            targetWindow.recycle();
+            targetWindow = null;
+        }
+    }
+
+    /**
+     * 重新选择目标窗口
+     * 按优先顺序逐个取应用窗口的根节点检查包名，第一个属于抖音的即为目标，
+     * 通常最上层的应用窗口就是抖音，只需一次跨进程获取。
+     *
+     * @return 目标窗口的根节点，仍由作用域持有；没有抖音窗口时返回null
+     */
+    private AccessibilityNodeInfo select() {
+        release();
+        imeVisible = false;
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) {
+            return null;
+        }
+        selections++;
+
+        List<AccessibilityWindowInfo> windows = service.getWindows();
+        windowsScanned += windows.size();
+        List<AccessibilityWindowInfo> candidates = new ArrayList<>(windows.size());
+        for (AccessibilityWindowInfo window : windows) {
+            if (window.getType() == AccessibilityWindowInfo.TYPE_INPUT_METHOD) {
+                imeVisible = true;
+            } else if (window.getType() == AccessibilityWindowInfo.TYPE_APPLICATION) {
+                candidates.add(window);
+            }
+        }
+        Collections.sort(candidates, preference);
+
+        AccessibilityWindowInfo best = null;
+        AccessibilityNodeInfo bestRoot = null;
+        for (AccessibilityWindowInfo window : candidates) {
+            AccessibilityNodeInfo root = scope.track(window.getRoot());
+            rootsFetched++;
+            if (root == null) {
+                continue;
+            }
+            if (TextUtils.equals(packageName, root.getPackageName())) {
+                best = window;
+                bestRoot = root;
+                break;
+            }
+            scope.release(root);
+        }
+
+        for (AccessibilityWindowInfo window : windows) {
+            if (window != best) {
+                window.recycle();
+            }
+        }
+        targetWindow = best;
+        ServiceLog.d(TAG, "目标窗口: {}，输入法{}", best != null ? best.getId() : "无", imeVisible ? "显示" : "隐藏");
+        return bestRoot;
+    }
+
+    public String getStats() {
+        return "选择窗口 " + selections + " 次（扫描 " + windowsScanned + " 个窗口，获取 " + rootsFetched
+                + " 个根节点），沿用缓存 " + cacheHits
+                + "，退回活动窗口 " + fallbacks;
+    }
+}
@@ -0,0 +1,489 @@
+package com.example.douyinautomation.utils;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 操作记录
+ *
+ * 只追加的操作历史，每条记录包含时间、所属会话（服务连接一次为一个会话）、操作名和结果。
+ * 记录先放入内存缓冲，由单独的线程按批写入文件，事件处理路径上没有磁盘读写。
+ * 文件格式为连续的定长头加操作名，单个文件超过上限后换新文件，只保留最近的几个文件；
+ * 写入中途进程被杀只会丢失末尾不完整的一条记录，下次接着写该文件前先截掉这条记录；
+ * 写入失败时文件恢复到写入前的长度，整批记录放回缓冲，下次写入时重试。
+ * 查询方法直接读文件，涉及文件读写，不要在主线程调用；尚未写入文件的记录查询不到。
+ */
+public class ActionJournal {
+    private static final String TAG = "ActionJournal";
+
+    private static final String DIRECTORY_NAME = "journal";
+    private static final String FILE_PREFIX = "journal-";
+    private static final String FILE_SUFFIX = ".bin";
+    private static final int MAX_FILE_BYTES = 256 * 1024;
+    private static final int MAX_FILES = 8;
+    // 每条记录的定长部分：时间、会话、结果，以及writeUTF写入的2字节长度
+    private static final int RECORD_HEADER_BYTES = 8 + 8 + 1 + 2;
+
+    // 缓冲达到这个数量立即写入，否则最多延迟FLUSH_DELAY_MS
+    private static final int BATCH_SIZE = 32;
+    private static final long FLUSH_DELAY_MS = 5000;
+    // 写入持续失败时缓冲最多保留的记录数，超出时丢弃最旧的记录
+    private static final int MAX_BUFFERED = BATCH_SIZE * 16;
+
+    // 查询时各文件的记录数，按文件长度判断是否需要重新统计；只有正在写入的文件长度会变化
+    private static final Map<File, long[]> recordCounts = new HashMap<>();
+
+    /**
+     * 操作结果
+     */
+    public enum Outcome {
+        SUCCEEDED, FAILED, SKIPPED, CANCELLED;
+
+        private static final Outcome[] VALUES = values();
+    }
+
+    /**
+     * 一条操作记录
+     */
+    public static final class Entry {
+        /** 操作时间，System.currentTimeMillis() */
+        public final long time;
+        /** 会话开始时间，同时作为会话标识 */
+        public final long session;
+        public final String action;
+        public final Outcome outcome;
+
+        Entry(long time, long session, String action, Outcome outcome) {
+            this.time = time;
+            this.session = session;
+            this.action = action;
+            this.outcome = outcome;
+        }
+    }
+
+    /**
+     * 一天内的操作统计
+     */
+    public static final class DayTotal {
+        /** 当天零点（本地时间） */
+        public final long dayStart;
+        private final Map<String, Integer> succeeded = new HashMap<>();
+        private int failed = 0;
+
+        DayTotal(long dayStart) {
+            this.dayStart = dayStart;
+        }
+
+        /**
+         * 指定操作当天成功的次数
+         */
+        public int getSucceeded(String action) {
+            Integer count = succeeded.get(action);
+            return count != null ? count : 0;
+        }
+
+        /**
+         * 当天失败和跳过的操作数
+         */
+        public int getFailed() {
+            return failed;
+        }
+
+        void add(Entry entry) {
+            if (entry.outcome == Outcome.SUCCEEDED) {
+                succeeded.put(entry.action, getSucceeded(entry.action) + 1);
+            } else if (entry.outcome != Outcome.CANCELLED) {
+                failed++;
+            }
+        }
+    }
+
+    private final File directory;
+    private final long session = System.currentTimeMillis();
+    private final HandlerThread thread;
+    private final Handler handler;
+    private final Runnable flushTask = this::flush;
+
+    // 缓冲在工作线程写入、在记录线程取出
+    private final Object lock = new Object();
+    private List<Entry> buffer = new ArrayList<>();
+    private boolean flushScheduled = false;
+    // 写入失败后等待重试，期间缓冲满了也不立即写入
+    private boolean retryScheduled = false;
+
+    // 以下只在记录线程上访问
+    private File currentFile;
+    private long writtenCount = 0;
+    private long flushCount = 0;
+    private long failedFlushCount = 0;
+    private long droppedCount = 0;
+
+    public ActionJournal(Context context) {
+        directory = getDirectory(context);
+        thread = new HandlerThread("ActionJournal", Process.THREAD_PRIORITY_BACKGROUND);
+        thread.start();
+        handler = new Handler(thread.getLooper());
+    }
+
+    /**
+     * 记录一次操作，只写入内存缓冲
+     */
+    public void record(String action, Outcome outcome) {
+        Entry entry = new Entry(System.currentTimeMillis(), session, action, outcome);
+        synchronized (lock) {
+            buffer.add(entry);
+            if (buffer.size() >= BATCH_SIZE && !retryScheduled) {
+                handler.removeCallbacks(flushTask);
+                handler.post(flushTask);
+                flushScheduled = true;
+            } else if (!flushScheduled) {
+                handler.postDelayed(flushTask, FLUSH_DELAY_MS);
+                flushScheduled = true;
+            }
+        }
+    }
+
+    /**
+     * 写入缓冲中剩余的记录后退出记录线程
+     */
+    public void close() {
+        handler.removeCallbacks(flushTask);
+        handler.post(flushTask);
+        thread.quitSafely();
+    }
+
+    public String getStats() {
+        return "会话 " + session + "，已写入 " + writtenCount + " 条，分 " + flushCount + " 批"
+                + "，写入失败 " + failedFlushCount + " 次，丢弃 " + droppedCount + " 条";
+    }
+
+    private void flush() {
+        List<Entry> batch;
+        synchronized (lock) {
+            batch = buffer;
+            buffer = new ArrayList<>();
+            flushScheduled = false;
+            retryScheduled = false;
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        File file = currentFile();
+        if (file == null) {
+            requeue(batch);
+            return;
+        }
+        long start = file.length();
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(file, true)))) {
+            for (Entry entry : batch) {
+                out.writeLong(entry.time);
+                out.writeLong(entry.session);
+                out.writeByte(entry.outcome.ordinal());
+                out.writeUTF(entry.action);
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "写入操作记录失败", e);
+            // 截掉本批已写入的部分，重试时整批重新写入不会重复
+            truncate(file, start);
+            currentFile = null;
+            requeue(batch);
+            return;
+        }
+        writtenCount += batch.size();
+        flushCount++;
+    }
+
+    /**
+     * 写入失败的记录放回缓冲头部，延迟后重试
+     */
+    private void requeue(List<Entry> batch) {
+        failedFlushCount++;
+        synchronized (lock) {
+            batch.addAll(buffer);
+            int overflow = batch.size() - MAX_BUFFERED;
+            if (overflow > 0) {
+                batch.subList(0, overflow).clear();
+                droppedCount += overflow;
+            }
+            buffer = batch;
+            handler.removeCallbacks(flushTask);
+            handler.postDelayed(flushTask, FLUSH_DELAY_MS);
+            flushScheduled = true;
+            retryScheduled = true;
+        }
+    }
+
+    private static void truncate(File file, long length) {
+        if (file.length() <= length) {
+            return;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(length);
+        } catch (IOException e) {
+            Log.w(TAG, "恢复操作记录文件失败: " + file, e);
+        }
+    }
+
+    /**
+     * 当前写入的文件，超过上限时换新文件并删除最旧的文件
+     * 新会话接着写上次未写满的文件，频繁重连服务不会很快挤掉历史记录
+     */
+    private File currentFile() {
+        if (currentFile != null && currentFile.length() < MAX_FILE_BYTES) {
+            return currentFile;
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            Log.w(TAG, "无法创建记录目录: " + directory);
+            return null;
+        }
+
+        File[] files = listFiles(directory);
+        if (currentFile == null && files.length > 0 && files[files.length - 1].length() < MAX_FILE_BYTES
+                && truncateIncompleteTail(files[files.length - 1])) {
+            currentFile = files[files.length - 1];
+            return currentFile;
+        }
+        for (int i = 0; i <= files.length - MAX_FILES; i++) {
+            files[i].delete();
+        }
+        currentFile = new File(directory, FILE_PREFIX + System.currentTimeMillis() + FILE_SUFFIX);
+        return currentFile;
+    }
+
+    /**
+     * 截掉文件末尾不完整的记录，否则之后追加的记录都会错位，整个文件无法读取
+     *
+     * @return 文件是否可以继续追加
+     */
+    private static boolean truncateIncompleteTail(File file) {
+        long length = file.length();
+        long complete = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            while (complete < length) {
+                in.readLong();
+                in.readLong();
+                in.readUnsignedByte();
+                int actionBytes = in.readUnsignedShort();
+                long end = complete + RECORD_HEADER_BYTES + actionBytes;
+                // 文件流可以跳过文件末尾，按文件长度判断操作名是否完整
+                if (end > length) {
+                    break;
+                }
+                in.skipBytes(actionBytes);
+                complete = end;
+            }
+        } catch (EOFException e) {
+            // 末尾的记录不完整
+        } catch (IOException e) {
+            Log.w(TAG, "检查操作记录失败: " + file, e);
+            return false;
+        }
+        if (complete >= length) {
+            return true;
+        }
+
+        Log.w(TAG, "截掉不完整的记录: " + file + "，" + length + " -> " + complete);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(complete);
+            return true;
+        } catch (IOException e) {
+            Log.w(TAG, "截断操作记录失败: " + file, e);
+            return false;
+        }
+    }
+
+    /**
+     * 分页读取操作记录，最新的在前
+     *
+     * @param offset 跳过的记录数
+     * @param limit 最多返回的记录数
+     */
+    public static List<Entry> query(Context context, int offset, int limit) {
+        List<Entry> result = new ArrayList<>(limit);
+        File[] files = listFiles(getDirectory(context));
+        int skipped = 0;
+        for (int i = files.length - 1; i >= 0 && result.size() < limit; i--) {
+            // 整个文件都在offset之前时只按记录数跳过，不读取记录内容
+            long count = getRecordCount(files[i]);
+            if (skipped + count <= offset) {
+                skipped += count;
+                continue;
+            }
+            List<Entry> entries = readFile(files[i]);
+            for (int j = entries.size() - 1; j >= 0 && result.size() < limit; j--) {
+                if (skipped < offset) {
+                    skipped++;
+                } else {
+                    result.add(entries.get(j));
+                }
+            }
+        }
+        synchronized (recordCounts) {
+            recordCounts.keySet().retainAll(Arrays.asList(files));
+        }
+        return result;
+    }
+
+    /**
+     * 文件中完整记录的条数，文件长度不变时使用上次统计的结果
+     */
+    private static long getRecordCount(File file) {
+        long length = file.length();
+        synchronized (recordCounts) {
+            long[] cached = recordCounts.get(file);
+            if (cached != null && cached[0] == length) {
+                return cached[1];
+            }
+        }
+        long count = countRecords(file, length);
+        synchronized (recordCounts) {
+            recordCounts.put(file, new long[]{length, count});
+        }
+        return count;
+    }
+
+    /**
+     * 只读取每条记录的定长头，跳过操作名
+     */
+    private static long countRecords(File file, long length) {
+        long count = 0;
+        long position = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            while (position + RECORD_HEADER_BYTES <= length) {
+                in.skipBytes(RECORD_HEADER_BYTES - 2);
+                int actionBytes = in.readUnsignedShort();
+                position += RECORD_HEADER_BYTES + actionBytes;
+                if (position > length) {
+                    break;
+                }
+                in.skipBytes(actionBytes);
+                count++;
+            }
+        } catch (EOFException e) {
+            // 末尾的记录不完整
+        } catch (IOException e) {
+            Log.w(TAG, "统计操作记录失败: " + file, e);
+        }
+        return count;
+    }
+
+    /**
+     * 按天统计最近几天的操作，最近的一天在前，没有记录的日期不返回
+     *
+     * @param days 统计的天数，包括今天
+     */
+    public static List<DayTotal> getDailyTotals(Context context, int days) {
+        Calendar calendar = Calendar.getInstance();
+        startOfDay(calendar, System.currentTimeMillis());
+        calendar.add(Calendar.DAY_OF_MONTH, 1 - days);
+        long cutoff = calendar.getTimeInMillis();
+
+        List<DayTotal> totals = new ArrayList<>();
+        File[] files = listFiles(getDirectory(context));
+        for (int i = files.length - 1; i >= 0; i--) {
+            List<Entry> entries = readFile(files[i]);
+            boolean older = false;
+            for (int j = entries.size() - 1; j >= 0; j--) {
+                Entry entry = entries.get(j);
+                if (entry.time < cutoff) {
+                    older = true;
+                    continue;
+                }
+                long dayStart = startOfDay(calendar, entry.time);
+                DayTotal total = findDay(totals, dayStart);
+                if (total == null) {
+                    total = new DayTotal(dayStart);
+                    totals.add(total);
+                }
+                total.add(entry);
+            }
+            // 文件按时间排列，出现更早的记录后不再读取更旧的文件
+            if (older) {
+                break;
+            }
+        }
+        Collections.sort(totals, (a, b) -> Long.compare(b.dayStart, a.dayStart));
+        return totals;
+    }
+
+    private static DayTotal findDay(List<DayTotal> totals, long dayStart) {
+        for (DayTotal total : totals) {
+            if (total.dayStart == dayStart) {
+                return total;
+            }
+        }
+        return null;
+    }
+
+    private static long startOfDay(Calendar calendar, long time) {
+        calendar.setTimeInMillis(time);
+        calendar.set(Calendar.HOUR_OF_DAY, 0);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        return calendar.getTimeInMillis();
+    }
+
+    /**
+     * 读取一个文件中的全部记录，末尾不完整的记录忽略
+     */
+    private static List<Entry> readFile(File file) {
+        List<Entry> entries = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            while (true) {
+                long time = in.readLong();
+                long session = in.readLong();
+                int outcome = in.readUnsignedByte();
+                String action = in.readUTF();
+                if (outcome < Outcome.VALUES.length) {
+                    entries.add(new Entry(time, session, action, Outcome.VALUES[outcome]));
+                }
+            }
+        } catch (EOFException e) {
+            // 文件结束
+        } catch (IOException e) {
+            Log.w(TAG, "读取操作记录失败: " + file, e);
+        }
+        return entries;
+    }
+
+    /**
+     * 记录文件，按创建时间从旧到新排列
+     */
+    private static File[] listFiles(File directory) {
+        File[] files = directory.listFiles((dir, name) -> name.startsWith(FILE_PREFIX) && name.endsWith(FILE_SUFFIX));
+        if (files == null) {
+            return new File[0];
+        }
+        // 文件名带创建时间，按名称排序即按时间排序
+        Arrays.sort(files);
+        return files;
+    }
+
+    private static File getDirectory(Context context) {
+        return new File(context.getFilesDir(), DIRECTORY_NAME);
+    }
+}
@@ -0,0 +1,231 @@
+package com.example.douyinautomation.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 操作决策
+ *
+ * 根据界面树判断当前界面，决定是否在当前视频上开始操作、保持或取消正在进行的操作，
+ * 以及按设置要执行哪些操作。与平台无关：设备上运行在快照上，离线回放时运行在录制的界面树上，
+ * 两边的决策逻辑完全相同。
+ * 非线程安全，设备上只在工作线程使用。
+ */
+public class ActionPlanner {
+
+    public static final String STEP_LIKE = "like";
+    public static final String STEP_FOLLOW = "follow";
+    public static final String STEP_COMMENT = "comment";
+    public static final String STEP_SCROLL = "scroll";
+
+    /**
+     * 界面类型
+     */
+    public enum Screen {
+        /** 视频播放界面（评论面板可能打开） */
+        VIDEO,
+        /** 评论区等从视频进入的界面 */
+        COMMENT,
+        /** 其他界面 */
+        OTHER
+    }
+
+    /**
+     * 决策结果
+     */
+    public enum Verdict {
+        /** 在新视频上开始操作 */
+        START,
+        /** 仍是同一个视频或评论界面，保持当前操作 */
+        KEEP,
+        /** 界面已离开，取消当前操作 */
+        CANCEL,
+        /** 最近处理过的视频，不重复操作 */
+        SEEN,
+        /** 不需要做任何事 */
+        NONE
+    }
+
+    /**
+     * 一次决策
+     */
+    public static final class Decision {
+        public final Screen screen;
+        public final boolean commentPanelOpen;
+        public final long fingerprint;
+        public final Verdict verdict;
+        /** 是否需要先取消上一个视频的操作（切换到新视频时与START同时出现） */
+        public final boolean cancelActive;
+        /** 要执行的操作，按执行顺序排列，只有START时非空 */
+        public final List<String> steps;
+        /** 本次开始的操作编号，只有START时有效 */
+        public final int runId;
+
+        Decision(Screen screen, boolean commentPanelOpen, long fingerprint, Verdict verdict,
+                 boolean cancelActive, List<String> steps, int runId) {
+            this.screen = screen;
+            this.commentPanelOpen = commentPanelOpen;
+            this.fingerprint = fingerprint;
+            this.verdict = verdict;
+            this.cancelActive = cancelActive;
+            this.steps = steps;
+            this.runId = runId;
+        }
+
+        @Override
+        public String toString() {
+            return verdict + (cancelActive ? "(取消上一个)" : "") + " " + screen
+                    + (commentPanelOpen ? "+评论面板" : "")
+                    + " 指纹=" + Long.toHexString(fingerprint)
+                    + (steps.isEmpty() ? "" : " 操作=" + steps);
+        }
+    }
+
+    private final DouyinUIMatcher matcher = new DouyinUIMatcher();
+    private final VideoFingerprint.RecentVideos recentVideos;
+
+    // 正在进行的操作，0表示没有
+    private int activeRunId = 0;
+    private long activeFingerprint = VideoFingerprint.UNKNOWN;
+    // 在无法计算指纹的视频上开始过操作。同一视频会反复触发界面处理，操作结束后无法靠指纹认出它，
+    // 再开始会把点赞点回去、重复发评论，所以直到滑动成功、出现可识别的视频或离开视频界面前都不再开始
+    private boolean unknownVideoHandled = false;
+    private int nextRunId = 1;
+    private int videoCount = 0;
+
+    /**
+     * @param recentCapacity 记住最近处理过的视频数
+     */
+    public ActionPlanner(int recentCapacity) {
+        recentVideos = new VideoFingerprint.RecentVideos(recentCapacity);
+    }
+
+    /**
+     * 对当前界面做出决策
+     *
+     * @param rootNode 界面树根节点
+     * @param profile 元素ID配置
+     * @param settings 当前设置
+     * @param canScroll 系统是否支持手势滑动
+     */
+    public Decision decide(UINode rootNode, SelectorProfile profile, AutomationSettings settings, boolean canScroll) {
+        boolean inVideo = matcher.isInVideoPlayingScreen(profile, rootNode);
+        boolean commentPanelOpen = matcher.findNodeByType(profile, rootNode, "comment_edit", false) != null;
+        long fingerprint = inVideo ? VideoFingerprint.compute(matcher, profile, rootNode) : VideoFingerprint.UNKNOWN;
+
+        boolean cancelActive = false;
+        if (activeRunId != 0) {
+            if (inVideo) {
+                // 同一个视频的界面刷新，或无法判断是否换了视频，保持当前操作
+                if (fingerprint == VideoFingerprint.UNKNOWN || fingerprint == activeFingerprint) {
+                    return decision(Screen.VIDEO, commentPanelOpen, fingerprint, Verdict.KEEP, false);
+                }
+                // 已切换到其他视频
+                cancelActive = true;
+                activeRunId = 0;
+            } else if (matcher.isInCommentScreen(profile, rootNode)) {
+                // 评论面板由操作自己打开，仍属于当前视频
+                return decision(Screen.COMMENT, commentPanelOpen, fingerprint, Verdict.KEEP, false);
+            } else {
+                activeRunId = 0;
+                unknownVideoHandled = false;
+                return decision(Screen.OTHER, commentPanelOpen, fingerprint, Verdict.CANCEL, true);
+            }
+        }
+
+        if (!inVideo) {
+            // 评论面板遮住视频时仍属于刚处理过的视频
+            if (unknownVideoHandled && !matcher.isInCommentScreen(profile, rootNode)) {
+                unknownVideoHandled = false;
+            }
+            return decision(Screen.OTHER, commentPanelOpen, fingerprint, Verdict.NONE, cancelActive);
+        }
+
+        // 每个视频只处理一次
+        if (fingerprint == VideoFingerprint.UNKNOWN) {
+            if (unknownVideoHandled) {
+                return decision(Screen.VIDEO, commentPanelOpen, fingerprint, Verdict.SEEN, cancelActive);
+            }
+        } else {
+            unknownVideoHandled = false;
+            if (!recentVideos.add(fingerprint)) {
+                return decision(Screen.VIDEO, commentPanelOpen, fingerprint, Verdict.SEEN, cancelActive);
+            }
+        }
+
+        List<String> steps = planSteps(settings, canScroll);
+        if (steps.isEmpty()) {
+            return decision(Screen.VIDEO, commentPanelOpen, fingerprint, Verdict.NONE, cancelActive);
+        }
+
+        videoCount++;
+        activeRunId = nextRunId++;
+        activeFingerprint = fingerprint;
+        unknownVideoHandled = fingerprint == VideoFingerprint.UNKNOWN;
+        return new Decision(Screen.VIDEO, commentPanelOpen, fingerprint, Verdict.START, cancelActive,
+                steps, activeRunId);
+    }
+
+    private static Decision decision(Screen screen, boolean commentPanelOpen, long fingerprint, Verdict verdict,
+                                     boolean cancelActive) {
+        return new Decision(screen, commentPanelOpen, fingerprint, verdict, cancelActive,
+                Collections.<String>emptyList(), 0);
+    }
+
+    /**
+     * 按设置列出一个视频上要执行的操作
+     */
+    public static List<String> planSteps(AutomationSettings settings, boolean canScroll) {
+        List<String> steps = new ArrayList<>(4);
+        if (settings.isAutoLike()) {
+            steps.add(STEP_LIKE);
+        }
+        if (settings.isAutoFollow()) {
+            steps.add(STEP_FOLLOW);
+        }
+        if (settings.isAutoComment() && settings.getCommentCount() > 0) {
+            steps.add(STEP_COMMENT);
+        }
+        if (settings.isAutoScroll() && canScroll) {
+            steps.add(STEP_SCROLL);
+        }
+        return steps;
+    }
+
+    /**
+     * 操作结束（完成或被取消），之后的界面不再视为当前视频的延续
+     *
+     * @param runId 开始时 {@link Decision#runId}，已被更新的操作取代时忽略
+     * @return 是否结束了当前的操作
+     */
+    public boolean onRunFinished(int runId) {
+        if (runId != activeRunId || runId == 0) {
+            return false;
+        }
+        activeRunId = 0;
+        return true;
+    }
+
+    /**
+     * 操作中的滑动已完成，之后的界面是新视频。
+     * 指纹对应的元素ID在某些抖音版本上可能找不到，这时只能靠滑动判断换了视频，否则只会处理第一个视频
+     */
+    public void onScrolled() {
+        unknownVideoHandled = false;
+    }
+
+    /**
+     * 决策使用的匹配器，用于读取遍历统计
+     */
+    public DouyinUIMatcher getMatcher() {
+        return matcher;
+    }
+
+    /**
+     * 已开始操作的视频数
+     */
+    public int getVideoCount() {
+        return videoCount;
+    }
+}
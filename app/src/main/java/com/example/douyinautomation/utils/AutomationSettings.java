@@ -0,0 +1,104 @@
+package com.example.douyinautomation.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 自动化设置快照
+ *
+ * 不可变对象，创建时解析好评论列表，读取时不访问SharedPreferences也不分配内存，
+ * 可以在任意线程上共享。设置变化时由 {@link SettingsManager} 整体替换。
+ */
+public final class AutomationSettings {
+
+    public static final String DEFAULT_COMMENTS = "很棒！\n真不错\n支持一下\n点赞了";
+
+    /**
+     * 首次安装时的默认设置
+     */
+    public static final AutomationSettings DEFAULT = new AutomationSettings(true, false, false, true, DEFAULT_COMMENTS);
+
+    private final boolean autoLike;
+    private final boolean autoFollow;
+    private final boolean autoComment;
+    private final boolean autoScroll;
+    private final String commentsText;
+    private final String[] comments;
+
+    /**
+     * @param commentsText 评论列表原文，每行一条，空行会被忽略
+     */
+    public AutomationSettings(boolean autoLike, boolean autoFollow, boolean autoComment, boolean autoScroll,
+                              String commentsText) {
+        this.autoLike = autoLike;
+        this.autoFollow = autoFollow;
+        this.autoComment = autoComment;
+        this.autoScroll = autoScroll;
+        this.commentsText = commentsText != null ? commentsText : "";
+        this.comments = parseComments(this.commentsText);
+    }
+
+    private static String[] parseComments(String text) {
+        List<String> list = new ArrayList<>();
+        for (String line : text.split("\n")) {
+            String comment = line.trim();
+            if (!comment.isEmpty()) {
+                list.add(comment);
+            }
+        }
+        return list.toArray(new String[0]);
+    }
+
+    public boolean isAutoLike() {
+        return autoLike;
+    }
+
+    public boolean isAutoFollow() {
+        return autoFollow;
+    }
+
+    public boolean isAutoComment() {
+        return autoComment;
+    }
+
+    public boolean isAutoScroll() {
+        return autoScroll;
+    }
+
+    /**
+     * 是否至少开启了一项功能
+     */
+    public boolean isAnyEnabled() {
+        return autoLike || autoFollow || autoComment || autoScroll;
+    }
+
+    /**
+     * 评论列表原文，用于在设置界面中编辑
+     */
+    public String getCommentsText() {
+        return commentsText;
+    }
+
+    public int getCommentCount() {
+        return comments.length;
+    }
+
+    /**
+     * 随机选择一条评论
+     *
+     * @return 评论，列表为空时返回null
+     */
+    public String pickComment(Random random) {
+        if (comments.length == 0) {
+            return null;
+        }
+        return comments[random.nextInt(comments.length)];
+    }
+
+    @Override
+    public String toString() {
+        return "点赞=" + autoLike + "，关注=" + autoFollow + "，评论=" + autoComment + "，滑动=" + autoScroll
+                + "，评论数=" + comments.length;
+    }
+}
@@ -1,20 +1,21 @@
 package com.example.douyinautomation.utils;
 
-import android.util.Log;
 import android.view.accessibility.AccessibilityNodeInfo;
 
-import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 /**
  * 抖音UI辅助类，用于处理不同版本抖音的界面元素
+ *
+ * 查找都在界面树快照上进行，匹配逻辑只有 {@link DouyinUIMatcher} 一份：
+ * 快照以 {@link UINode} 形式交给匹配器，找到后再取回对应的无障碍节点执行操作。
+ * 操作决策（{@link ActionPlanner}）、基准测试和离线回放使用的也是同一个匹配器。
  */
 public class DouyinUIHelper {
     private static final String TAG = "DouyinUIHelper";
     
-    // 抖音常见UI元素ID映射
+    // 抖音常见UI元素ID映射，assets中的配置加载失败时使用
     private static final Map<String, String[]> UI_ELEMENT_IDS = new HashMap<>();
     
     static {
@@ -56,95 +57,109 @@ public class DouyinUIHelper {
                 "com.ss.android.ugc.aweme:id/c47",
                 "com.ss.android.ugc.aweme:id/share_button"
         });
+        
+        // 作者名和文案用于计算视频指纹
+        UI_ELEMENT_IDS.put("author_name", new String[]{
+                "com.ss.android.ugc.aweme:id/title",
+                "com.ss.android.ugc.aweme:id/author_name"
+        });
+        
+        UI_ELEMENT_IDS.put("video_desc", new String[]{
+                "com.ss.android.ugc.aweme:id/desc",
+                "com.ss.android.ugc.aweme:id/video_desc"
+        });
     }
     
+    // 每个线程复用一个与平台无关的匹配器
+    private static final ThreadLocal<DouyinUIMatcher> MATCHER = new ThreadLocal<DouyinUIMatcher>() {
+        @Override
+        protected DouyinUIMatcher initialValue() {
+            return new DouyinUIMatcher();
+        }
+    };
+    
+    // 当前使用的元素ID配置，按命中率排序候选ID
+    private static volatile SelectorProfile selectorProfile = new SelectorProfile("builtin", -1, UI_ELEMENT_IDS);
+    
     /**
-     * 通过元素类型查找节点
+     * 设置元素ID配置，通常由服务在启动时根据抖音版本加载
+     */
+    public static void setSelectorProfile(SelectorProfile profile) {
+        if (profile != null) {
+            selectorProfile = profile;
+        }
+    }
+    
+    public static SelectorProfile getSelectorProfile() {
+        return selectorProfile;
+    }
+    
+    /**
+     * 通过元素类型在快照中查找节点，不发起树查询
      * 
-     * @param rootNode 根节点
+     * @param snapshot 界面树快照
      * @param elementType 元素类型，如"like_button"
      * @return 找到的节点，未找到返回null
      */
-    public static AccessibilityNodeInfo findNodeByType(AccessibilityNodeInfo rootNode, String elementType) {
-        if (rootNode == null || !UI_ELEMENT_IDS.containsKey(elementType)) {
+    public static AccessibilityNodeInfo findNodeByType(UITreeSnapshot snapshot, String elementType) {
+        if (snapshot == null) {
             return null;
         }
         
-        String[] ids = UI_ELEMENT_IDS.get(elementType);
-        for (String id : ids) {
-            List<AccessibilityNodeInfo> nodes = rootNode.findAccessibilityNodeInfosByViewId(id);
-            if (!nodes.isEmpty()) {
-                return nodes.get(0);
+        long start = HelperCallBreakdown.begin();
+        try {
+            DouyinUIMatcher matcher = MATCHER.get();
+            UINode node = matcher.findNodeByType(selectorProfile, snapshot.getRoot(), elementType, false);
+            recordVisited(matcher);
+            ServiceMetrics.recordLookup(elementType, node != null);
+            if (node == null) {
+                ServiceLog.v(TAG, "未找到元素: {}", elementType);
             }
+            return UITreeSnapshot.nodeOf(node);
+        } finally {
+            HelperCallBreakdown.end(HelperCallBreakdown.Call.FIND_BY_TYPE, start);
         }
-        
-        return null;
     }
     
     /**
-     * 通过文本内容查找节点
+     * 在快照中查找第一个文本或内容描述包含指定文本的节点，找到即停止
      * 
-     * @param rootNode 根节点
+     * @param snapshot 界面树快照
      * @param text 文本内容
-     * @return 找到的节点列表
-     */
-    public static List<AccessibilityNodeInfo> findNodesByText(AccessibilityNodeInfo rootNode, String text) {
-        List<AccessibilityNodeInfo> result = new ArrayList<>();
-        findNodesByTextRecursive(rootNode, text, result);
-        return result;
-    }
-    
-    /**
-     * 递归查找包含指定文本的节点
+     * @return 找到的节点，未找到返回null
      */
-    private static void findNodesByTextRecursive(AccessibilityNodeInfo node, String text, List<AccessibilityNodeInfo> result) {
-        if (node == null) return;
-        
-        CharSequence nodeText = node.getText();
-        CharSequence nodeDesc = node.getContentDescription();
-        
-        if ((nodeText != null && nodeText.toString().contains(text)) || 
-            (nodeDesc != null && nodeDesc.toString().contains(text))) {
-            result.add(node);
+    public static AccessibilityNodeInfo findFirstNodeByText(UITreeSnapshot snapshot, String text) {
+        if (snapshot == null) {
+            return null;
         }
         
-        for (int i = 0; i < node.getChildCount(); i++) {
-            AccessibilityNodeInfo child = node.getChild(i);
-            if (child != null) {
-                findNodesByTextRecursive(child, text, result);
-            }
+        long start = HelperCallBreakdown.begin();
+        try {
+            DouyinUIMatcher matcher = MATCHER.get();
+            UINode node = matcher.findFirstNodeByText(snapshot.getRoot(), text);
+            recordVisited(matcher);
+            return UITreeSnapshot.nodeOf(node);
+        } finally {
+            HelperCallBreakdown.end(HelperCallBreakdown.Call.FIND_BY_TEXT, start);
         }
     }
     
     /**
-     * 检测当前是否在视频播放界面
+     * 把匹配器的遍历统计累计到运行指标
      */
-    public static boolean isInVideoPlayingScreen(AccessibilityNodeInfo rootNode) {
-        if (rootNode == null) {
-            return false;
+    public static void recordVisited(DouyinUIMatcher matcher) {
+        ServiceMetrics.add(ServiceMetrics.Counter.NODES_VISITED, matcher.takeVisited());
+        long truncated = matcher.takeTruncated();
+        if (truncated > 0) {
+            ServiceMetrics.add(ServiceMetrics.Counter.SEARCHES_TRUNCATED, truncated);
         }
-        
-        // 通过检查点赞、评论等按钮是否存在来判断
-        AccessibilityNodeInfo likeButton = findNodeByType(rootNode, "like_button");
-        AccessibilityNodeInfo commentButton = findNodeByType(rootNode, "comment_button");
-        
-        return likeButton != null || commentButton != null;
     }
     
     /**
-     * 检测当前是否在评论区界面
+     * 基于快照检测当前是否在视频播放界面：点赞或评论按钮存在
      */
-    public static boolean isInCommentScreen(AccessibilityNodeInfo rootNode) {
-        if (rootNode == null) {
-            return false;
-        }
-        
-        // 查找评论编辑框
-        AccessibilityNodeInfo commentEdit = findNodeByType(rootNode, "comment_edit");
-        
-        // 或者查找包含"评论"文字的节点
-        List<AccessibilityNodeInfo> commentTextNodes = findNodesByText(rootNode, "评论");
-        
-        return commentEdit != null || !commentTextNodes.isEmpty();
+    public static boolean isInVideoPlayingScreen(UITreeSnapshot snapshot) {
+        return findNodeByType(snapshot, "like_button") != null
+                || findNodeByType(snapshot, "comment_button") != null;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,305 @@
+package com.example.douyinautomation.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 抖音界面元素匹配
+ *
+ * {@link DouyinUIHelper} 中与平台无关的查找和界面检测逻辑，运行在 {@link UINode} 上，
+ * 可以脱离设备测试和做基准测试。
+ * 遍历使用可复用的数组栈（不会因树过深而栈溢出），受最大深度和最大访问节点数限制，
+ * 异常的界面树（如无限嵌套的列表）不会让一次查找遍历过多节点；超出限制的查找按未找到处理并计数。
+ * 实例不是线程安全的，每个线程使用各自的实例。
+ */
+public class DouyinUIMatcher {
+
+    public static final int DEFAULT_MAX_DEPTH = 64;
+    public static final int DEFAULT_MAX_NODES = 3000;
+
+    private static final int INITIAL_STACK_SIZE = 64;
+
+    private int maxDepth = DEFAULT_MAX_DEPTH;
+    private int maxNodes = DEFAULT_MAX_NODES;
+
+    // 遍历栈，跨查找复用，depthStack[i]是stack[i]的深度
+    private UINode[] stack = new UINode[INITIAL_STACK_SIZE];
+    private int[] depthStack = new int[INITIAL_STACK_SIZE];
+    private int lastVisited = 0;
+    private boolean lastTruncated = false;
+    private long visitedSinceTake = 0;
+    private long truncatedSinceTake = 0;
+
+    public DouyinUIMatcher setMaxDepth(int maxDepth) {
+        this.maxDepth = maxDepth;
+        return this;
+    }
+
+    public DouyinUIMatcher setMaxNodes(int maxNodes) {
+        this.maxNodes = maxNodes;
+        return this;
+    }
+
+    /**
+     * 最近一次查找访问的节点数
+     */
+    public int getLastVisited() {
+        return lastVisited;
+    }
+
+    /**
+     * 自上次调用以来所有查找访问的节点数，调用后清零，用于累计到运行指标
+     */
+    public long takeVisited() {
+        long visited = visitedSinceTake;
+        visitedSinceTake = 0;
+        return visited;
+    }
+
+    /**
+     * 最近一次查找是否因深度或节点数限制而没有遍历完整棵树
+     */
+    public boolean wasLastTruncated() {
+        return lastTruncated;
+    }
+
+    /**
+     * 自上次调用以来因限制提前结束的查找数，调用后清零，用于累计到运行指标
+     */
+    public long takeTruncated() {
+        long truncated = truncatedSinceTake;
+        truncatedSinceTake = 0;
+        return truncated;
+    }
+
+    /**
+     * 通过元素类型查找节点
+     * 一次遍历同时匹配所有候选ID，返回优先级最高的ID对应的第一个节点，
+     * 命中统计与逐个ID查询时一致：排在命中ID之前的候选ID记为未命中。
+     * 根节点实现 {@link UINode.Indexed} 时按优先级逐个ID查索引，结果与遍历相同，只访问候选节点
+     *
+     * @param profile 元素ID配置
+     * @param rootNode 根节点
+     * @param elementType 元素类型，如"like_button"
+     * @param visibleOnly 是否只匹配对用户可见的节点
+     * @return 找到的节点，未找到返回null
+     */
+    public UINode findNodeByType(SelectorProfile profile, UINode rootNode, String elementType, boolean visibleOnly) {
+        begin();
+        String[] ids = profile.getIds(elementType);
+        if (rootNode == null || ids == null) {
+            return null;
+        }
+
+        UINode best = null;
+        int bestRank = ids.length;
+        if (rootNode instanceof UINode.Indexed) {
+            UINode.Indexed indexed = (UINode.Indexed) rootNode;
+            for (int rank = 0; rank < ids.length && best == null; rank++) {
+                List<? extends UINode> candidates = indexed.findByViewId(ids[rank]);
+                for (int i = 0, size = candidates.size(); i < size; i++) {
+                    UINode node = candidates.get(i);
+                    lastVisited++;
+                    if (!visibleOnly || node.isVisibleToUser()) {
+                        best = node;
+                        bestRank = rank;
+                        break;
+                    }
+                }
+            }
+            visitedSinceTake += lastVisited;
+            recordResults(profile, elementType, ids, best, bestRank);
+            return best;
+        }
+
+        int top = push(0, rootNode, 0);
+        while (top > 0) {
+            if (lastVisited >= maxNodes) {
+                lastTruncated = true;
+                break;
+            }
+            UINode node = stack[--top];
+            stack[top] = null;
+            lastVisited++;
+
+            String viewId = node.getViewId();
+            if (viewId != null) {
+                int rank = rankOf(ids, viewId, bestRank);
+                if (rank < bestRank && (!visibleOnly || node.isVisibleToUser())) {
+                    best = node;
+                    bestRank = rank;
+                    if (rank == 0) {
+                        break;
+                    }
+                }
+            }
+            top = pushChildren(top, node, depthStack[top]);
+        }
+        finish(top);
+        recordResults(profile, elementType, ids, best, bestRank);
+        return best;
+    }
+
+    private static void recordResults(SelectorProfile profile, String elementType, String[] ids,
+                                      UINode best, int bestRank) {
+        for (int i = 0; i < bestRank; i++) {
+            profile.recordResult(elementType, ids[i], false);
+        }
+        if (best != null) {
+            profile.recordResult(elementType, ids[bestRank], true);
+        }
+    }
+
+    /**
+     * 查找文本或内容描述包含指定文本的节点
+     *
+     * @param maxMatches 最多返回的匹配数
+     * @return 匹配的节点，按布局顺序排列
+     */
+    public List<UINode> findNodesByText(UINode rootNode, String text, int maxMatches) {
+        begin();
+        List<UINode> result = new ArrayList<>(Math.min(maxMatches, 4));
+        if (rootNode == null || text == null || maxMatches <= 0) {
+            return result;
+        }
+
+        int top = push(0, rootNode, 0);
+        while (top > 0) {
+            if (lastVisited >= maxNodes) {
+                lastTruncated = true;
+                break;
+            }
+            UINode node = stack[--top];
+            stack[top] = null;
+            lastVisited++;
+
+            if (contains(node.getText(), text) || contains(node.getContentDescription(), text)) {
+                result.add(node);
+                if (result.size() >= maxMatches) {
+                    break;
+                }
+            }
+            top = pushChildren(top, node, depthStack[top]);
+        }
+        finish(top);
+        return result;
+    }
+
+    /**
+     * 查找第一个包含指定文本的节点，找到即停止
+     */
+    public UINode findFirstNodeByText(UINode rootNode, String text) {
+        List<UINode> nodes = findNodesByText(rootNode, text, 1);
+        return nodes.isEmpty() ? null : nodes.get(0);
+    }
+
+    /**
+     * 检测是否在视频播放界面：点赞或评论按钮存在
+     */
+    public boolean isInVideoPlayingScreen(SelectorProfile profile, UINode rootNode) {
+        return findNodeByType(profile, rootNode, "like_button", false) != null
+                || findNodeByType(profile, rootNode, "comment_button", false) != null;
+    }
+
+    /**
+     * 检测是否在评论区界面：评论输入框存在，或有包含"评论"的节点
+     */
+    public boolean isInCommentScreen(SelectorProfile profile, UINode rootNode) {
+        return findNodeByType(profile, rootNode, "comment_edit", false) != null
+                || findFirstNodeByText(rootNode, "评论") != null;
+    }
+
+    private static int rankOf(String[] ids, String viewId, int limit) {
+        for (int i = 0; i < limit; i++) {
+            if (ids[i].equals(viewId)) {
+                return i;
+            }
+        }
+        return limit;
+    }
+
+    private void begin() {
+        lastVisited = 0;
+        lastTruncated = false;
+    }
+
+    /**
+     * 清空栈中剩余的节点并累计统计
+     */
+    private void finish(int top) {
+        while (top > 0) {
+            stack[--top] = null;
+        }
+        visitedSinceTake += lastVisited;
+        if (lastTruncated) {
+            truncatedSinceTake++;
+        }
+    }
+
+    private int push(int top, UINode node, int depth) {
+        if (top == stack.length) {
+            UINode[] grown = new UINode[stack.length * 2];
+            System.arraycopy(stack, 0, grown, 0, stack.length);
+            stack = grown;
+            int[] grownDepths = new int[depthStack.length * 2];
+            System.arraycopy(depthStack, 0, grownDepths, 0, depthStack.length);
+            depthStack = grownDepths;
+        }
+        stack[top] = node;
+        depthStack[top] = depth;
+        return top + 1;
+    }
+
+    /**
+     * 逆序入栈，保证出栈顺序与布局顺序一致；超过最大深度的子树不再展开
+     */
+    private int pushChildren(int top, UINode node, int depth) {
+        int childCount = node.getChildCount();
+        if (childCount == 0) {
+            return top;
+        }
+        if (depth >= maxDepth) {
+            lastTruncated = true;
+            return top;
+        }
+        for (int i = childCount - 1; i >= 0; i--) {
+            UINode child = node.getChild(i);
+            if (child != null) {
+                top = push(top, child, depth + 1);
+            }
+        }
+        return top;
+    }
+
+    /**
+     * 判断haystack是否包含needle，不会把haystack转换为字符串
+     */
+    public static boolean contains(CharSequence haystack, String needle) {
+        if (haystack == null) {
+            return false;
+        }
+        if (haystack instanceof String) {
+            return ((String) haystack).contains(needle);
+        }
+
+        int needleLength = needle.length();
+        int last = haystack.length() - needleLength;
+        if (needleLength == 0) {
+            return true;
+        }
+        char first = needle.charAt(0);
+        for (int i = 0; i <= last; i++) {
+            if (haystack.charAt(i) != first) {
+                continue;
+            }
+            int j = 1;
+            while (j < needleLength && haystack.charAt(i + j) == needle.charAt(j)) {
+                j++;
+            }
+            if (j == needleLength) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.douyinautomation.utils;
+
+/**
+ * 界面处理调用分解
+ *
+ * 按线程统计一条消息中各环节的调用次数和耗时：选择窗口并获取根节点、快照局部更新或重建、
+ * 操作决策，以及 {@link DouyinUIHelper} 的查找。由消息监控在每条消息开始时清零、
+ * 结束时读取，得到一条慢消息里时间花在了哪些环节上。
+ * 未启用时每次调用只多一次volatile读取；启用后每次调用多两次System.nanoTime()和一次ThreadLocal读取，
+ * 与各环节本身的耗时相比可以忽略。各环节互不嵌套，组合方法（如isInVideoPlayingScreen）的耗时
+ * 计入它调用的查找，不重复计算。
+ */
+public final class HelperCallBreakdown {
+
+    /**
+     * 统计的环节
+     */
+    public enum Call {
+        /** 选择目标窗口并获取根节点，含跨进程调用 */
+        WINDOW_SELECT("getTargetRoot"),
+        /** 快照局部更新，重新读取变化的子树 */
+        SNAPSHOT_PATCH("applyPendingUpdates"),
+        /** 快照整体重建，重新读取整棵树 */
+        SNAPSHOT_REBUILD("rebuild"),
+        /** 操作决策，在快照上做界面检测和指纹计算 */
+        PLANNER_DECIDE("decide"),
+        FIND_BY_TYPE("findNodeByType"),
+        FIND_BY_TEXT("findFirstNodeByText");
+
+        final String label;
+
+        Call(String label) {
+            this.label = label;
+        }
+    }
+
+    private static final Call[] CALLS = Call.values();
+
+    /**
+     * 一个线程上的计数，只由该线程读写
+     */
+    private static final class Counts {
+        final int[] calls = new int[CALLS.length];
+        final long[] nanos = new long[CALLS.length];
+    }
+
+    private static final ThreadLocal<Counts> COUNTS = new ThreadLocal<Counts>() {
+        @Override
+        protected Counts initialValue() {
+            return new Counts();
+        }
+    };
+
+    private static volatile boolean enabled = false;
+
+    private HelperCallBreakdown() {
+    }
+
+    public static void setEnabled(boolean enabled) {
+        HelperCallBreakdown.enabled = enabled;
+    }
+
+    /**
+     * 环节开始，返回值传给 {@link #end(Call, long)}；未启用时返回0
+     */
+    public static long begin() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * 环节结束，计入当前线程
+     */
+    public static void end(Call call, long start) {
+        if (start == 0) {
+            return;
+        }
+        Counts counts = COUNTS.get();
+        counts.calls[call.ordinal()]++;
+        counts.nanos[call.ordinal()] += System.nanoTime() - start;
+    }
+
+    /**
+     * 清零当前线程的计数
+     */
+    public static void reset() {
+        if (!enabled) {
+            return;
+        }
+        Counts counts = COUNTS.get();
+        for (int i = 0; i < CALLS.length; i++) {
+            counts.calls[i] = 0;
+            counts.nanos[i] = 0;
+        }
+    }
+
+    /**
+     * 当前线程自上次清零以来的调用分解，如"getTargetRoot×1 180ms，rebuild×1 95ms，decide×1 4ms"
+     *
+     * @return 没有调用时返回空字符串
+     */
+    public static String describe() {
+        if (!enabled) {
+            return "";
+        }
+        Counts counts = COUNTS.get();
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < CALLS.length; i++) {
+            if (counts.calls[i] == 0) {
+                continue;
+            }
+            if (builder.length() > 0) {
+                builder.append("，");
+            }
+            builder.append(CALLS[i].label).append('×').append(counts.calls[i])
+                    .append(' ').append(counts.nanos[i] / 1000000).append("ms");
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,197 @@
+package com.example.douyinautomation.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 内存中的界面树节点
+ *
+ * 属性在构造后只通过链式方法设置，用于离线构造或还原界面树，不依赖Android。
+ * 与设备上的快照一样提供view-id索引，在第一次按view-id查找时建立，之后不应再修改这棵子树。
+ */
+public final class MemoryUINode implements UINode.Indexed {
+
+    private final String viewId;
+    private CharSequence text;
+    private CharSequence contentDescription;
+    private boolean visibleToUser = true;
+    private int left, top, right, bottom;
+    private final List<MemoryUINode> children = new ArrayList<>();
+    // 以本节点为根的子树的view-id索引，按需建立
+    private Map<String, List<MemoryUINode>> nodesByViewId;
+
+    public MemoryUINode(String viewId) {
+        this.viewId = viewId;
+    }
+
+    public MemoryUINode setText(CharSequence text) {
+        this.text = text;
+        return this;
+    }
+
+    public MemoryUINode setContentDescription(CharSequence contentDescription) {
+        this.contentDescription = contentDescription;
+        return this;
+    }
+
+    public MemoryUINode setVisibleToUser(boolean visibleToUser) {
+        this.visibleToUser = visibleToUser;
+        return this;
+    }
+
+    public MemoryUINode setBounds(int left, int top, int right, int bottom) {
+        this.left = left;
+        this.top = top;
+        this.right = right;
+        this.bottom = bottom;
+        return this;
+    }
+
+    /**
+     * 复制任意界面树，用于把设备上的快照保存为与平台无关的形式
+     */
+    public static MemoryUINode copyOf(UINode root) {
+        if (root == null) {
+            return null;
+        }
+
+        int[] bounds = new int[4];
+        MemoryUINode copyRoot = copyProperties(root, bounds);
+        List<UINode> sources = new ArrayList<>();
+        List<MemoryUINode> copies = new ArrayList<>();
+        sources.add(root);
+        copies.add(copyRoot);
+        while (!sources.isEmpty()) {
+            UINode source = sources.remove(sources.size() - 1);
+            MemoryUINode copy = copies.remove(copies.size() - 1);
+            int childCount = source.getChildCount();
+            for (int i = 0; i < childCount; i++) {
+                UINode child = source.getChild(i);
+                if (child != null) {
+                    sources.add(child);
+                    copies.add(copy.addChild(copyProperties(child, bounds)));
+                }
+            }
+        }
+        return copyRoot;
+    }
+
+    private static MemoryUINode copyProperties(UINode source, int[] bounds) {
+        source.getBoundsInScreen(bounds);
+        return new MemoryUINode(source.getViewId())
+                .setText(toStringOrNull(source.getText()))
+                .setContentDescription(toStringOrNull(source.getContentDescription()))
+                .setVisibleToUser(source.isVisibleToUser())
+                .setBounds(bounds[0], bounds[1], bounds[2], bounds[3]);
+    }
+
+    private static String toStringOrNull(CharSequence value) {
+        return value != null ? value.toString() : null;
+    }
+
+    /**
+     * 添加子节点
+     *
+     * @return 添加的子节点，便于继续构造下一层
+     */
+    public MemoryUINode addChild(MemoryUINode child) {
+        children.add(child);
+        nodesByViewId = null;
+        return child;
+    }
+
+    /**
+     * 以本节点为根的子树节点数
+     */
+    public int countNodes() {
+        int count = 0;
+        List<MemoryUINode> stack = new ArrayList<>();
+        stack.add(this);
+        while (!stack.isEmpty()) {
+            MemoryUINode node = stack.remove(stack.size() - 1);
+            count++;
+            stack.addAll(node.children);
+        }
+        return count;
+    }
+
+    @Override
+    public List<MemoryUINode> findByViewId(String viewId) {
+        if (nodesByViewId == null) {
+            nodesByViewId = buildIndex();
+        }
+        List<MemoryUINode> nodes = nodesByViewId.get(viewId);
+        return nodes != null ? nodes : Collections.<MemoryUINode>emptyList();
+    }
+
+    /**
+     * 按布局顺序遍历子树，建立view-id索引
+     */
+    private Map<String, List<MemoryUINode>> buildIndex() {
+        Map<String, List<MemoryUINode>> index = new HashMap<>();
+        List<MemoryUINode> stack = new ArrayList<>();
+        stack.add(this);
+        while (!stack.isEmpty()) {
+            MemoryUINode node = stack.remove(stack.size() - 1);
+            if (node.viewId != null) {
+                List<MemoryUINode> nodes = index.get(node.viewId);
+                if (nodes == null) {
+                    nodes = new ArrayList<>(1);
+                    index.put(node.viewId, nodes);
+                }
+                nodes.add(node);
+            }
+            // 逆序入栈，保证出栈顺序与布局顺序一致
+            for (int i = node.children.size() - 1; i >= 0; i--) {
+                stack.add(node.children.get(i));
+            }
+        }
+        return index;
+    }
+
+    @Override
+    public String getViewId() {
+        return viewId;
+    }
+
+    @Override
+    public CharSequence getText() {
+        return text;
+    }
+
+    @Override
+    public CharSequence getContentDescription() {
+        return contentDescription;
+    }
+
+    @Override
+    public boolean isVisibleToUser() {
+        return visibleToUser;
+    }
+
+    @Override
+    public void getBoundsInScreen(int[] bounds) {
+        bounds[0] = left;
+        bounds[1] = top;
+        bounds[2] = right;
+        bounds[3] = bottom;
+    }
+
+    @Override
+    public int getChildCount() {
+        return children.size();
+    }
+
+    @Override
+    public MemoryUINode getChild(int index) {
+        return children.get(index);
+    }
+
+    @Override
+    public String toString() {
+        return "MemoryUINode{" + viewId + ", text=" + text + ", children=" + children.size() + "}";
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.douyinautomation.utils;
+
+import android.util.Log;
+import android.view.accessibility.AccessibilityNodeInfo;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 节点泄漏检测（仅调试模式启用）
+ *
+ * 记录经由 {@link NodeScope} 获取但尚未回收的节点及其获取位置，
+ * 服务结束时输出仍未回收的节点，按调用位置汇总。
+ */
+public class NodeLeakTracker {
+    private static final String TAG = "NodeLeakTracker";
+
+    // 报告中最多列出的调用位置数
+    private static final int MAX_REPORTED_SITES = 10;
+
+    private static volatile boolean enabled = false;
+
+    private static final Map<AccessibilityNodeInfo, Throwable> outstanding = new IdentityHashMap<>();
+
+    public static void setEnabled(boolean enabled) {
+        NodeLeakTracker.enabled = enabled;
+        if (!enabled) {
+            synchronized (outstanding) {
+                outstanding.clear();
+            }
+        }
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    static void onAcquire(AccessibilityNodeInfo node) {
+        if (!enabled) {
+            return;
+        }
+        Throwable callSite = new Throwable("节点获取位置");
+        synchronized (outstanding) {
+            outstanding.put(node, callSite);
+        }
+    }
+
+    static void onRelease(AccessibilityNodeInfo node) {
+        if (!enabled) {
+            return;
+        }
+        synchronized (outstanding) {
+            outstanding.remove(node);
+        }
+    }
+
+    /**
+     * 当前获取后尚未回收的节点数
+     */
+    public static int getOutstandingCount() {
+        synchronized (outstanding) {
+            return outstanding.size();
+        }
+    }
+
+    /**
+     * 输出尚未回收的节点，按获取位置汇总
+     *
+     * @return 尚未回收的节点数
+     */
+    public static int report() {
+        if (!enabled) {
+            return 0;
+        }
+
+        Map<String, Integer> countsBySite = new HashMap<>();
+        int total;
+        synchronized (outstanding) {
+            total = outstanding.size();
+            for (Throwable callSite : outstanding.values()) {
+                String site = describeCallSite(callSite);
+                Integer count = countsBySite.get(site);
+                countsBySite.put(site, count == null ? 1 : count + 1);
+            }
+        }
+
+        if (total == 0) {
+            Log.d(TAG, "没有未回收的节点");
+            return 0;
+        }
+
+        List<Map.Entry<String, Integer>> sites = new ArrayList<>(countsBySite.entrySet());
+        Collections.sort(sites, (a, b) -> b.getValue() - a.getValue());
+
+        Log.w(TAG, "未回收的节点: " + total);
+        for (int i = 0; i < sites.size() && i < MAX_REPORTED_SITES; i++) {
+            Map.Entry<String, Integer> site = sites.get(i);
+            Log.w(TAG, "  " + site.getValue() + " 个，获取于 " + site.getKey());
+        }
+        return total;
+    }
+
+    /**
+     * 取调用栈中第一个不属于节点管理代码的栈帧
+     */
+    private static String describeCallSite(Throwable callSite) {
+        for (StackTraceElement frame : callSite.getStackTrace()) {
+            String className = frame.getClassName();
+            if (!className.equals(NodeLeakTracker.class.getName())
+                    && !className.equals(NodeScope.class.getName())) {
+                return frame.toString();
+            }
+        }
+        return "未知位置";
+    }
+}
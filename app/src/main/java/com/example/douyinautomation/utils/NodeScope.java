@@ -0,0 +1,102 @@
+package com.example.douyinautomation.utils;
+
+import android.view.accessibility.AccessibilityEvent;
+import android.view.accessibility.AccessibilityNodeInfo;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * 节点生命周期作用域
+ *
+ * 通过作用域获取的节点都会被记录，作用域关闭时统一回收，
+ * 避免遍历和查询过程中获取的子节点、查询结果遗漏回收。
+ * 用法：
+ * <pre>
+ * try (NodeScope scope = new NodeScope()) {
+ *     AccessibilityNodeInfo root = scope.track(getRootInActiveWindow());
+ *     ...
+ * }
+ * </pre>
+ * 非线程安全。
+ */
+public class NodeScope implements AutoCloseable {
+
+    private final Set<AccessibilityNodeInfo> nodes =
+            Collections.newSetFromMap(new IdentityHashMap<AccessibilityNodeInfo, Boolean>());
+
+    /**
+     * 将已获取的节点纳入作用域管理
+     *
+     * @return 传入的节点，便于链式调用；null时直接返回null
+     */
+    public AccessibilityNodeInfo track(AccessibilityNodeInfo node) {
+        if (node != null && nodes.add(node)) {
+            NodeLeakTracker.onAcquire(node);
+        }
+        return node;
+    }
+
+    public AccessibilityNodeInfo getChild(AccessibilityNodeInfo parent, int index) {
+        return track(parent.getChild(index));
+    }
+
+    public AccessibilityNodeInfo getParent(AccessibilityNodeInfo node) {
+        return track(node.getParent());
+    }
+
+    public AccessibilityNodeInfo getSource(AccessibilityEvent event) {
+        return track(event.getSource());
+    }
+
+    /**
+     * 作用域是否持有该节点
+     */
+    public boolean owns(AccessibilityNodeInfo node) {
+        return nodes.contains(node);
+    }
+
+    public int size() {
+        return nodes.size();
+    }
+
+    /**
+     * 提前回收单个节点
+     */
+    public void release(AccessibilityNodeInfo node) {
+        if (node != null && nodes.remove(node)) {
+            recycle(node);
+        }
+    }
+
+    /**
+     * 将节点移出作用域，调用方负责之后的回收（通常是交给另一个作用域管理）
+     */
+    public AccessibilityNodeInfo detach(AccessibilityNodeInfo node) {
+        // 泄漏记录保留，直到节点被另一个作用域接管或回收
+        if (node != null) {
+            nodes.remove(node);
+        }
+        return node;
+    }
+
+    /**
+     * 回收作用域持有的所有节点
+     */
+    @Override
+    public void close() {
+        for (AccessibilityNodeInfo node : nodes) {
+            recycle(node);
+        }
+        nodes.clear();
+    }
+
+    /**
+     * 回收已移出作用域（{@link #detach}）而不再交给其他作用域的节点，泄漏记录随之清除
+     */
+    static void recycle(AccessibilityNodeInfo node) {
+        NodeLeakTracker.onRelease(node);
+        node.recycle();
+    }
+}
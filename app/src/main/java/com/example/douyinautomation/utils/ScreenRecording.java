@@ -0,0 +1,378 @@
+package com.example.douyinautomation.utils;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 界面录制格式
+ *
+ * 按时间顺序保存服务收到的事件和遇到的界面树，供离线回放使用。与平台无关。
+ * 另外记录操作结束和滑动完成的时间点，回放时据此与设备上的决策状态保持一致。
+ * 格式：文件头（魔数、版本）之后是连续的记录，每条记录以类型字节开头，时间为相对上一条记录的毫秒增量。
+ * 整数使用变长编码，字符串在文件内第一次出现时写出内容，之后只写编号，
+ * 资源ID、类名等重复字符串只占一两个字节。
+ * 记录逐条写出，进程被杀时只会丢失最后一条不完整的记录。
+ */
+public final class ScreenRecording {
+
+    private static final int MAGIC = 0x44595243; // "DYRC"
+    // 版本2增加了标记记录，仍可读取版本1的文件
+    private static final int VERSION = 2;
+    private static final int MIN_VERSION = 1;
+
+    private static final int RECORD_EVENT = 1;
+    private static final int RECORD_TREE = 2;
+    private static final int RECORD_MARKER = 3;
+
+    /** 标记：一次操作结束（完成或被取消） */
+    public static final int MARKER_RUN_FINISHED = 1;
+    /** 标记：滑动手势完成，已换到下一个视频 */
+    public static final int MARKER_SCROLLED = 2;
+
+    private static final int FLAG_VISIBLE = 1;
+
+    // writeUTF最多写出64KB，过长的文本截断
+    private static final int MAX_STRING_LENGTH = 4096;
+
+    private ScreenRecording() {
+    }
+
+    /**
+     * 录制的无障碍事件
+     */
+    public static final class Event {
+        public final int eventType;
+        public final int windowId;
+        public final int contentChangeTypes;
+        public final String packageName;
+        public final String className;
+
+        public Event(int eventType, int windowId, int contentChangeTypes, String packageName, String className) {
+            this.eventType = eventType;
+            this.windowId = windowId;
+            this.contentChangeTypes = contentChangeTypes;
+            this.packageName = packageName;
+            this.className = className;
+        }
+    }
+
+    /**
+     * 读出的一条记录，event、tree和marker只有一个有效
+     */
+    public static final class Record {
+        /** 录制时的单调时钟时间，毫秒 */
+        public final long timeMs;
+        public final Event event;
+        public final int windowId;
+        public final MemoryUINode tree;
+        public final int nodeCount;
+        /** MARKER_*，不是标记记录时为0 */
+        public final int marker;
+
+        Record(long timeMs, Event event, int windowId, MemoryUINode tree, int nodeCount, int marker) {
+            this.timeMs = timeMs;
+            this.event = event;
+            this.windowId = windowId;
+            this.tree = tree;
+            this.nodeCount = nodeCount;
+            this.marker = marker;
+        }
+
+        public boolean isTree() {
+            return tree != null;
+        }
+
+        public boolean isMarker() {
+            return marker != 0;
+        }
+    }
+
+    /**
+     * 录制写入，非线程安全
+     */
+    public static final class Writer implements AutoCloseable {
+        private final DataOutputStream out;
+        private final Map<String, Integer> strings = new HashMap<>();
+        private final int[] bounds = new int[4];
+        private long lastTime = 0;
+
+        public Writer(OutputStream output) throws IOException {
+            out = new DataOutputStream(output);
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+        }
+
+        public void writeEvent(long timeMs, Event event) throws IOException {
+            out.writeByte(RECORD_EVENT);
+            writeTime(timeMs);
+            writeVarInt(event.eventType);
+            writeVarInt(zigZag(event.windowId));
+            writeVarInt(event.contentChangeTypes);
+            writeString(event.packageName);
+            writeString(event.className);
+        }
+
+        /**
+         * 写入一棵界面树，按先序遍历逐个写出节点
+         */
+        public void writeTree(long timeMs, int windowId, UINode root) throws IOException {
+            out.writeByte(RECORD_TREE);
+            writeTime(timeMs);
+            writeVarInt(zigZag(windowId));
+
+            List<UINode> stack = new ArrayList<>();
+            stack.add(root);
+            while (!stack.isEmpty()) {
+                UINode node = stack.remove(stack.size() - 1);
+                node.getBoundsInScreen(bounds);
+                out.writeByte(node.isVisibleToUser() ? FLAG_VISIBLE : 0);
+                writeString(node.getViewId());
+                writeString(node.getText());
+                writeString(node.getContentDescription());
+                for (int bound : bounds) {
+                    writeVarInt(zigZag(bound));
+                }
+
+                // 先写子节点数，读取时据此还原结构；无法获取的子节点不写出
+                List<UINode> children = new ArrayList<>(node.getChildCount());
+                for (int i = 0; i < node.getChildCount(); i++) {
+                    UINode child = node.getChild(i);
+                    if (child != null) {
+                        children.add(child);
+                    }
+                }
+                writeVarInt(children.size());
+                for (int i = children.size() - 1; i >= 0; i--) {
+                    stack.add(children.get(i));
+                }
+            }
+        }
+
+        /**
+         * 写入标记
+         *
+         * @param marker MARKER_*
+         */
+        public void writeMarker(long timeMs, int marker) throws IOException {
+            out.writeByte(RECORD_MARKER);
+            writeTime(timeMs);
+            writeVarInt(marker);
+        }
+
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        /**
+         * 已写入的字节数
+         */
+        public int size() {
+            return out.size();
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+
+        private void writeTime(long timeMs) throws IOException {
+            writeVarLong(zigZag(timeMs - lastTime));
+            lastTime = timeMs;
+        }
+
+        /**
+         * 0表示null；编号等于已有字符串数+1表示新字符串，后面跟内容；否则为已出现字符串的编号+1
+         */
+        private void writeString(CharSequence value) throws IOException {
+            if (value == null) {
+                writeVarInt(0);
+                return;
+            }
+            String string = value.length() > MAX_STRING_LENGTH
+                    ? value.subSequence(0, MAX_STRING_LENGTH).toString() : value.toString();
+            Integer index = strings.get(string);
+            if (index != null) {
+                writeVarInt(index + 1);
+                return;
+            }
+            int newIndex = strings.size();
+            strings.put(string, newIndex);
+            writeVarInt(newIndex + 1);
+            out.writeUTF(string);
+        }
+
+        private void writeVarInt(int value) throws IOException {
+            writeVarLong(value & 0xffffffffL);
+        }
+
+        private void writeVarLong(long value) throws IOException {
+            while ((value & ~0x7fL) != 0) {
+                out.writeByte((int) ((value & 0x7f) | 0x80));
+                value >>>= 7;
+            }
+            out.writeByte((int) value);
+        }
+    }
+
+    /**
+     * 录制读取
+     */
+    public static final class Reader implements AutoCloseable {
+        private final DataInputStream in;
+        private final List<String> strings = new ArrayList<>();
+        private long lastTime = 0;
+
+        public Reader(InputStream input) throws IOException {
+            in = new DataInputStream(input);
+            if (in.readInt() != MAGIC) {
+                throw new IOException("不是界面录制文件");
+            }
+            int version = in.readUnsignedByte();
+            if (version < MIN_VERSION || version > VERSION) {
+                throw new IOException("不支持的录制版本: " + version);
+            }
+        }
+
+        /**
+         * 读取下一条记录
+         *
+         * @return 记录，文件结束（包括末尾不完整的记录）时返回null
+         */
+        public Record next() throws IOException {
+            try {
+                int type = in.read();
+                if (type < 0) {
+                    return null;
+                }
+                long timeMs = readTime();
+                switch (type) {
+                    case RECORD_EVENT:
+                        return new Record(timeMs, readEvent(), 0, null, 0, 0);
+                    case RECORD_TREE:
+                        return readTree(timeMs);
+                    case RECORD_MARKER:
+                        return new Record(timeMs, null, 0, null, 0, readVarInt());
+                    default:
+                        throw new IOException("未知的记录类型: " + type);
+                }
+            } catch (EOFException e) {
+                return null;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+
+        private Event readEvent() throws IOException {
+            int eventType = readVarInt();
+            int windowId = unZigZag(readVarInt());
+            int contentChangeTypes = readVarInt();
+            String packageName = readString();
+            String className = readString();
+            return new Event(eventType, windowId, contentChangeTypes, packageName, className);
+        }
+
+        private Record readTree(long timeMs) throws IOException {
+            int windowId = unZigZag(readVarInt());
+
+            // 每个待读取的父节点及其剩余子节点数
+            List<MemoryUINode> parents = new ArrayList<>();
+            List<Integer> remaining = new ArrayList<>();
+            MemoryUINode root = null;
+            int count = 0;
+            do {
+                int flags = in.readUnsignedByte();
+                MemoryUINode node = new MemoryUINode(readString())
+                        .setText(readString())
+                        .setContentDescription(readString())
+                        .setVisibleToUser((flags & FLAG_VISIBLE) != 0)
+                        .setBounds(unZigZag(readVarInt()), unZigZag(readVarInt()),
+                                unZigZag(readVarInt()), unZigZag(readVarInt()));
+                int childCount = readVarInt();
+                count++;
+
+                if (root == null) {
+                    root = node;
+                } else {
+                    int last = parents.size() - 1;
+                    parents.get(last).addChild(node);
+                    remaining.set(last, remaining.get(last) - 1);
+                }
+                if (childCount > 0) {
+                    parents.add(node);
+                    remaining.add(childCount);
+                }
+                while (!remaining.isEmpty() && remaining.get(remaining.size() - 1) == 0) {
+                    parents.remove(parents.size() - 1);
+                    remaining.remove(remaining.size() - 1);
+                }
+            } while (!parents.isEmpty());
+
+            return new Record(timeMs, null, windowId, root, count, 0);
+        }
+
+        private long readTime() throws IOException {
+            lastTime += unZigZag(readVarLong());
+            return lastTime;
+        }
+
+        private String readString() throws IOException {
+            int ref = readVarInt();
+            if (ref == 0) {
+                return null;
+            }
+            int index = ref - 1;
+            if (index < strings.size()) {
+                return strings.get(index);
+            }
+            if (index != strings.size()) {
+                throw new IOException("字符串编号错误: " + ref);
+            }
+            String value = in.readUTF();
+            strings.add(value);
+            return value;
+        }
+
+        private int readVarInt() throws IOException {
+            return (int) readVarLong();
+        }
+
+        private long readVarLong() throws IOException {
+            long result = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = in.readUnsignedByte();
+                result |= (long) (b & 0x7f) << shift;
+                if ((b & 0x80) == 0) {
+                    return result;
+                }
+            }
+            throw new IOException("变长整数过长");
+        }
+    }
+
+    private static int zigZag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static int unZigZag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,210 @@
+package com.example.douyinautomation.utils;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * 某一版本抖音的界面元素ID配置
+ *
+ * 每种元素可以有多个候选ID，运行时统计每个ID的命中率，
+ * 查找时优先尝试命中率最高的ID，减少必然落空的查询。
+ * 统计可以导出为JSON持久化，服务重启后恢复。
+ */
+public class SelectorProfile {
+
+    // 每累计这么多次查找结果重新排序一次，避免每次查找都排序
+    private static final int REORDER_INTERVAL = 16;
+
+    private final String name;
+    private final long versionCode;
+    private final Map<String, ElementSelectors> elements;
+
+    /**
+     * 单个元素类型的候选ID及命中统计
+     */
+    private static final class ElementSelectors {
+        final String[] ids;
+        final AtomicIntegerArray hits;
+        final AtomicIntegerArray attempts;
+        final AtomicInteger pendingResults = new AtomicInteger();
+        volatile String[] orderedIds;
+
+        ElementSelectors(String[] ids) {
+            this.ids = ids;
+            this.hits = new AtomicIntegerArray(ids.length);
+            this.attempts = new AtomicIntegerArray(ids.length);
+            this.orderedIds = ids;
+        }
+
+        void record(String id, boolean hit) {
+            for (int i = 0; i < ids.length; i++) {
+                if (ids[i].equals(id)) {
+                    attempts.incrementAndGet(i);
+                    if (hit) {
+                        hits.incrementAndGet(i);
+                    }
+                    break;
+                }
+            }
+            if (pendingResults.incrementAndGet() >= REORDER_INTERVAL) {
+                pendingResults.set(0);
+                reorder();
+            }
+        }
+
+        void reorder() {
+            Integer[] order = new Integer[ids.length];
+            final double[] rates = new double[ids.length];
+            for (int i = 0; i < ids.length; i++) {
+                order[i] = i;
+                // 拉普拉斯平滑，没有数据的ID排在中间位置
+                rates[i] = (hits.get(i) + 1.0) / (attempts.get(i) + 2.0);
+            }
+            // 稳定排序，命中率相同时保持配置中的顺序
+            Arrays.sort(order, (a, b) -> Double.compare(rates[b], rates[a]));
+
+            String[] sorted = new String[ids.length];
+            for (int i = 0; i < ids.length; i++) {
+                sorted[i] = ids[order[i]];
+            }
+            orderedIds = sorted;
+        }
+    }
+
+    /**
+     * @param name 配置名称
+     * @param versionCode 该配置对应的抖音版本号
+     * @param elementIds 元素类型到候选ID的映射，数组顺序为初始查找顺序
+     */
+    public SelectorProfile(String name, long versionCode, Map<String, String[]> elementIds) {
+        this.name = name;
+        this.versionCode = versionCode;
+
+        Map<String, ElementSelectors> map = new HashMap<>();
+        for (Map.Entry<String, String[]> entry : elementIds.entrySet()) {
+            map.put(entry.getKey(), new ElementSelectors(entry.getValue().clone()));
+        }
+        this.elements = Collections.unmodifiableMap(map);
+    }
+
+    /**
+     * 解析配置文件（assets/selector_profiles.json的格式），选出版本范围包含versionCode的第一个配置
+     */
+    public static SelectorProfile fromJson(String json, long versionCode) throws JSONException {
+        JSONArray profiles = new JSONObject(json).getJSONArray("profiles");
+        for (int i = 0; i < profiles.length(); i++) {
+            JSONObject profile = profiles.getJSONObject(i);
+            long minVersion = profile.optLong("minVersionCode", 0);
+            long maxVersion = profile.optLong("maxVersionCode", Long.MAX_VALUE);
+            if (versionCode < minVersion || versionCode > maxVersion) {
+                continue;
+            }
+
+            Map<String, String[]> elementIds = new HashMap<>();
+            JSONObject elements = profile.getJSONObject("elements");
+            Iterator<String> types = elements.keys();
+            while (types.hasNext()) {
+                String type = types.next();
+                JSONArray ids = elements.getJSONArray(type);
+                String[] values = new String[ids.length()];
+                for (int j = 0; j < values.length; j++) {
+                    values[j] = ids.getString(j);
+                }
+                elementIds.put(type, values);
+            }
+            return new SelectorProfile(profile.optString("name", "profile" + i), versionCode, elementIds);
+        }
+        return null;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getVersionCode() {
+        return versionCode;
+    }
+
+    public Set<String> getElementTypes() {
+        return elements.keySet();
+    }
+
+    public boolean hasElement(String elementType) {
+        return elements.containsKey(elementType);
+    }
+
+    /**
+     * 按命中率从高到低返回元素的候选ID，未知元素类型返回null
+     */
+    public String[] getIds(String elementType) {
+        ElementSelectors selectors = elements.get(elementType);
+        return selectors != null ? selectors.orderedIds : null;
+    }
+
+    /**
+     * 记录一次查找结果
+     *
+     * @param elementType 元素类型
+     * @param id 尝试的ID
+     * @param hit 是否找到节点
+     */
+    public void recordResult(String elementType, String id, boolean hit) {
+        ElementSelectors selectors = elements.get(elementType);
+        if (selectors != null) {
+            selectors.record(id, hit);
+        }
+    }
+
+    /**
+     * 导出命中统计，格式为 {"元素类型": {"ID": [命中次数, 尝试次数]}}
+     */
+    public JSONObject exportStats() throws JSONException {
+        JSONObject result = new JSONObject();
+        for (Map.Entry<String, ElementSelectors> entry : elements.entrySet()) {
+            ElementSelectors selectors = entry.getValue();
+            JSONObject idStats = new JSONObject();
+            for (int i = 0; i < selectors.ids.length; i++) {
+                JSONArray counts = new JSONArray();
+                counts.put(selectors.hits.get(i));
+                counts.put(selectors.attempts.get(i));
+                idStats.put(selectors.ids[i], counts);
+            }
+            result.put(entry.getKey(), idStats);
+        }
+        return result;
+    }
+
+    /**
+     * 恢复之前导出的命中统计，配置中已不存在的元素或ID会被忽略
+     */
+    public void importStats(JSONObject stats) throws JSONException {
+        Iterator<String> types = stats.keys();
+        while (types.hasNext()) {
+            String type = types.next();
+            ElementSelectors selectors = elements.get(type);
+            JSONObject idStats = stats.optJSONObject(type);
+            if (selectors == null || idStats == null) {
+                continue;
+            }
+
+            for (int i = 0; i < selectors.ids.length; i++) {
+                JSONArray counts = idStats.optJSONArray(selectors.ids[i]);
+                if (counts != null && counts.length() == 2) {
+                    selectors.hits.set(i, counts.getInt(0));
+                    selectors.attempts.set(i, counts.getInt(1));
+                }
+            }
+            selectors.reorder();
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.douyinautomation.utils;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.os.Build;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 从assets加载与已安装抖音版本匹配的元素ID配置，并负责命中统计的持久化
+ */
+public class SelectorProfileLoader {
+    private static final String TAG = "SelectorProfileLoader";
+    private static final String DOUYIN_PACKAGE = "com.ss.android.ugc.aweme";
+    private static final String ASSET_NAME = "selector_profiles.json";
+    private static final String STATS_PREFS_NAME = "DouyinSelectorStats";
+    private static final String KEY_STATS_PREFIX = "stats_";
+
+    /**
+     * 加载与已安装抖音版本匹配的配置，并恢复该版本之前的命中统计
+     *
+     * @return 匹配的配置，assets读取失败或没有匹配的配置时返回null
+     */
+    public static SelectorProfile load(Context context) {
+        long versionCode = getTargetVersionCode(context);
+
+        SelectorProfile profile;
+        try {
+            profile = SelectorProfile.fromJson(readAsset(context), versionCode);
+        } catch (IOException | JSONException e) {
+            ServiceLog.e(TAG, "读取元素ID配置失败", e);
+            return null;
+        }
+
+        if (profile == null) {
+            ServiceLog.w(TAG, "没有与抖音版本 {} 匹配的元素ID配置", versionCode);
+            return null;
+        }
+
+        restoreStats(context, profile);
+        ServiceLog.d(TAG, "已加载元素ID配置 {}，抖音版本 {}", profile.getName(), versionCode);
+        return profile;
+    }
+
+    /**
+     * 获取已安装抖音的versionCode，未安装时返回-1
+     */
+    public static long getTargetVersionCode(Context context) {
+        try {
+            PackageInfo info = context.getPackageManager().getPackageInfo(DOUYIN_PACKAGE, 0);
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P) {
+                return info.getLongVersionCode();
+            }
+            return info.versionCode;
+        } catch (PackageManager.NameNotFoundException e) {
+            return -1;
+        }
+    }
+
+    private static String readAsset(Context context) throws IOException {
+        try (InputStream in = context.getAssets().open(ASSET_NAME)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toString("UTF-8");
+        }
+    }
+
+    private static void restoreStats(Context context, SelectorProfile profile) {
+        SharedPreferences preferences = context.getSharedPreferences(STATS_PREFS_NAME, Context.MODE_PRIVATE);
+        String stats = preferences.getString(KEY_STATS_PREFIX + profile.getVersionCode(), null);
+        if (stats == null) {
+            return;
+        }
+
+        try {
+            profile.importStats(new JSONObject(stats));
+        } catch (JSONException e) {
+            ServiceLog.w(TAG, "命中统计已损坏，重新统计", e);
+        }
+    }
+
+    /**
+     * 保存配置的命中统计，按抖音版本分别存储
+     */
+    public static void saveStats(Context context, SelectorProfile profile) {
+        try {
+            String stats = profile.exportStats().toString();
+            context.getSharedPreferences(STATS_PREFS_NAME, Context.MODE_PRIVATE)
+                    .edit()
+                    .putString(KEY_STATS_PREFIX + profile.getVersionCode(), stats)
+                    .apply();
+        } catch (JSONException e) {
+            ServiceLog.w(TAG, "保存命中统计失败", e);
+        }
+    }
+}
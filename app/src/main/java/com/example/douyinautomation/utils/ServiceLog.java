@@ -0,0 +1,289 @@
+package com.example.douyinautomation.utils;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 服务日志
+ *
+ * 日志以模板加参数的形式记录（模板中的"{}"依次替换为参数），只有真正输出时才格式化：
+ * 低于最低级别的调用在第一行比较后直接返回，不拼接字符串；
+ * 达到环形缓冲级别的记录只把模板和参数引用存入预先分配的槽位，不格式化也不分配内存；
+ * 达到logcat级别的记录才格式化后写入logcat。
+ * 环形缓冲保留最近的记录，出错后可以导出查看之前发生了什么。
+ * 参数在导出时才转为字符串，应传入不可变的值（字符串、数字、枚举），不要传入之后会被回收或修改的对象。
+ * 为避免可变参数数组的分配，提供固定参数个数的重载；单个数字参数走long重载，不装箱。
+ */
+public final class ServiceLog {
+
+    public static final int VERBOSE = Log.VERBOSE;
+    public static final int DEBUG = Log.DEBUG;
+    public static final int INFO = Log.INFO;
+    public static final int WARN = Log.WARN;
+    public static final int ERROR = Log.ERROR;
+    // 高于所有级别，表示关闭
+    public static final int OFF = Log.ASSERT + 1;
+
+    private static final int CAPACITY = 512;
+    // 没有这个参数
+    private static final Object NO_ARG = new Object();
+    // 参数是number字段中的数字
+    private static final Object NUMBER_ARG = new Object();
+
+    /**
+     * 环形缓冲中的一条记录，槽位预先分配，写入时覆盖字段
+     */
+    private static final class Slot {
+        long time;
+        int level;
+        String tag;
+        String format;
+        Object arg0;
+        Object arg1;
+        Object arg2;
+        long number;
+        Throwable error;
+        String thread;
+    }
+
+    private static final Slot[] slots = new Slot[CAPACITY];
+    private static long written = 0;
+
+    // 默认与调试版本一致，服务连接时按构建类型调整
+    private static volatile int logcatLevel = DEBUG;
+    private static volatile int bufferLevel = DEBUG;
+    private static volatile int minLevel = DEBUG;
+
+    private static final AtomicBoolean crashHandlerInstalled = new AtomicBoolean(false);
+    private static volatile File crashDumpFile;
+
+    static {
+        for (int i = 0; i < CAPACITY; i++) {
+            slots[i] = new Slot();
+        }
+    }
+
+    private ServiceLog() {
+    }
+
+    /**
+     * 设置输出级别
+     *
+     * @param logcat 写入logcat的最低级别，{@link #OFF} 表示不写入
+     * @param buffer 存入环形缓冲的最低级别，{@link #OFF} 表示不存入
+     */
+    public static void setLevels(int logcat, int buffer) {
+        logcatLevel = logcat;
+        bufferLevel = buffer;
+        minLevel = Math.min(logcat, buffer);
+    }
+
+    public static boolean isLoggable(int level) {
+        return level >= minLevel;
+    }
+
+    public static void v(String tag, String message) {
+        if (VERBOSE >= minLevel) log(VERBOSE, tag, message, NO_ARG, NO_ARG, NO_ARG, 0, null);
+    }
+
+    public static void v(String tag, String format, Object arg0) {
+        if (VERBOSE >= minLevel) log(VERBOSE, tag, format, arg0, NO_ARG, NO_ARG, 0, null);
+    }
+
+    public static void v(String tag, String format, Object arg0, Object arg1) {
+        if (VERBOSE >= minLevel) log(VERBOSE, tag, format, arg0, arg1, NO_ARG, 0, null);
+    }
+
+    public static void d(String tag, String message) {
+        if (DEBUG >= minLevel) log(DEBUG, tag, message, NO_ARG, NO_ARG, NO_ARG, 0, null);
+    }
+
+    public static void d(String tag, String format, long number) {
+        if (DEBUG >= minLevel) log(DEBUG, tag, format, NUMBER_ARG, NO_ARG, NO_ARG, number, null);
+    }
+
+    public static void d(String tag, String format, Object arg0) {
+        if (DEBUG >= minLevel) log(DEBUG, tag, format, arg0, NO_ARG, NO_ARG, 0, null);
+    }
+
+    public static void d(String tag, String format, Object arg0, Object arg1) {
+        if (DEBUG >= minLevel) log(DEBUG, tag, format, arg0, arg1, NO_ARG, 0, null);
+    }
+
+    public static void d(String tag, String format, Object arg0, Object arg1, Object arg2) {
+        if (DEBUG >= minLevel) log(DEBUG, tag, format, arg0, arg1, arg2, 0, null);
+    }
+
+    public static void i(String tag, String message) {
+        if (INFO >= minLevel) log(INFO, tag, message, NO_ARG, NO_ARG, NO_ARG, 0, null);
+    }
+
+    public static void i(String tag, String format, Object arg0) {
+        if (INFO >= minLevel) log(INFO, tag, format, arg0, NO_ARG, NO_ARG, 0, null);
+    }
+
+    public static void w(String tag, String message) {
+        if (WARN >= minLevel) log(WARN, tag, message, NO_ARG, NO_ARG, NO_ARG, 0, null);
+    }
+
+    public static void w(String tag, String format, Object arg0) {
+        if (WARN >= minLevel) log(WARN, tag, format, arg0, NO_ARG, NO_ARG, 0, null);
+    }
+
+    public static void w(String tag, String format, Object arg0, Object arg1) {
+        if (WARN >= minLevel) log(WARN, tag, format, arg0, arg1, NO_ARG, 0, null);
+    }
+
+    public static void w(String tag, String format, Object arg0, Object arg1, Object arg2) {
+        if (WARN >= minLevel) log(WARN, tag, format, arg0, arg1, arg2, 0, null);
+    }
+
+    public static void w(String tag, String message, Throwable error) {
+        if (WARN >= minLevel) log(WARN, tag, message, NO_ARG, NO_ARG, NO_ARG, 0, error);
+    }
+
+    public static void e(String tag, String message, Throwable error) {
+        if (ERROR >= minLevel) log(ERROR, tag, message, NO_ARG, NO_ARG, NO_ARG, 0, error);
+    }
+
+    private static void log(int level, String tag, String format, Object arg0, Object arg1, Object arg2,
+                            long number, Throwable error) {
+        if (level >= bufferLevel) {
+            synchronized (slots) {
+                Slot slot = slots[(int) (written++ % CAPACITY)];
+                slot.time = System.currentTimeMillis();
+                slot.level = level;
+                slot.tag = tag;
+                slot.format = format;
+                slot.arg0 = arg0;
+                slot.arg1 = arg1;
+                slot.arg2 = arg2;
+                slot.number = number;
+                slot.error = error;
+                slot.thread = Thread.currentThread().getName();
+            }
+        }
+        if (level >= logcatLevel) {
+            String message = format(format, arg0, arg1, arg2, number);
+            if (error != null) {
+                message += '\n' + Log.getStackTraceString(error);
+            }
+            Log.println(level, tag, message);
+        }
+    }
+
+    /**
+     * 把模板中的"{}"依次替换为参数，多出的"{}"原样保留
+     */
+    private static String format(String format, Object arg0, Object arg1, Object arg2, long number) {
+        if (arg0 == NO_ARG) {
+            return format;
+        }
+        StringBuilder builder = new StringBuilder(format.length() + 32);
+        int argIndex = 0;
+        int start = 0;
+        int index;
+        while ((index = format.indexOf("{}", start)) >= 0) {
+            builder.append(format, start, index);
+            Object arg = argIndex == 0 ? arg0 : argIndex == 1 ? arg1 : argIndex == 2 ? arg2 : NO_ARG;
+            if (arg == NO_ARG) {
+                builder.append("{}");
+            } else if (arg == NUMBER_ARG) {
+                builder.append(number);
+            } else {
+                builder.append(arg);
+            }
+            argIndex++;
+            start = index + 2;
+        }
+        builder.append(format, start, format.length());
+        return builder.toString();
+    }
+
+    /**
+     * 按时间顺序导出环形缓冲中的记录
+     */
+    public static String dump() {
+        SimpleDateFormat timeFormat = new SimpleDateFormat("MM-dd HH:mm:ss.SSS", Locale.ROOT);
+        StringBuilder builder = new StringBuilder();
+        synchronized (slots) {
+            long first = Math.max(0, written - CAPACITY);
+            for (long i = first; i < written; i++) {
+                Slot slot = slots[(int) (i % CAPACITY)];
+                builder.append(timeFormat.format(new Date(slot.time)))
+                        .append(' ').append(levelName(slot.level))
+                        .append(' ').append(slot.thread)
+                        .append(' ').append(slot.tag).append(": ")
+                        .append(format(slot.format, slot.arg0, slot.arg1, slot.arg2, slot.number))
+                        .append('\n');
+                if (slot.error != null) {
+                    StringWriter trace = new StringWriter();
+                    slot.error.printStackTrace(new PrintWriter(trace));
+                    builder.append(trace);
+                }
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 把环形缓冲导出到文件，涉及文件读写，不要在主线程调用
+     *
+     * @return 是否写入成功
+     */
+    public static boolean dumpTo(File file) {
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), Charset.forName("UTF-8"))) {
+            writer.write(dump());
+            return true;
+        } catch (IOException e) {
+            Log.w("ServiceLog", "导出日志失败", e);
+            return false;
+        }
+    }
+
+    /**
+     * 进程因未捕获的异常退出前把环形缓冲导出到文件，之后交给原来的处理器。
+     * 多次调用只安装一次，只更新导出的文件
+     */
+    public static void dumpOnCrash(File file) {
+        crashDumpFile = file;
+        if (crashHandlerInstalled.getAndSet(true)) {
+            return;
+        }
+        final Thread.UncaughtExceptionHandler previous = Thread.getDefaultUncaughtExceptionHandler();
+        Thread.setDefaultUncaughtExceptionHandler((thread, error) -> {
+            e("ServiceLog", "未捕获的异常", error);
+            dumpTo(crashDumpFile);
+            if (previous != null) {
+                previous.uncaughtException(thread, error);
+            }
+        });
+    }
+
+    private static char levelName(int level) {
+        switch (level) {
+            case VERBOSE:
+                return 'V';
+            case DEBUG:
+                return 'D';
+            case INFO:
+                return 'I';
+            case WARN:
+                return 'W';
+            default:
+                return 'E';
+        }
+    }
+}
@@ -0,0 +1,344 @@
+package com.example.douyinautomation.utils;
+
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 服务运行指标
+ *
+ * 进程内全局的计数器和耗时直方图，记录时只做原子加法，不加锁、不分配内存
+ * （按元素类型和操作名统计的条目只在第一次出现时创建）。
+ * 可随时导出为JSON快照，写入文件供调试工具或界面读取。
+ */
+public class ServiceMetrics {
+    private static final String TAG = "ServiceMetrics";
+
+    /**
+     * 计数器
+     */
+    public enum Counter {
+        /** 收到的无障碍事件 */
+        EVENTS_RECEIVED,
+        /** 与界面无关被丢弃的事件 */
+        EVENTS_DROPPED,
+        /** 合并到已有等待中的事件 */
+        EVENTS_COALESCED,
+        /** 界面稳定后发出的处理信号 */
+        SCREEN_SIGNALS,
+        /** 处理过的界面 */
+        SCREENS_PROCESSED,
+        /** 界面检测和元素查找在快照上遍历的节点 */
+        NODES_VISITED,
+        /** 因深度或节点数限制没有遍历完整棵树的查找 */
+        SEARCHES_TRUNCATED,
+        /** 快照读取的节点 */
+        NODES_READ,
+        /** 快照整体重建 */
+        SNAPSHOT_REBUILDS,
+        /** 快照局部更新 */
+        SNAPSHOT_PATCHES,
+        /** 成功的操作 */
+        ACTIONS_SUCCEEDED,
+        /** 失败的操作 */
+        ACTIONS_FAILED,
+        /** 条件不满足被跳过的操作 */
+        ACTIONS_SKIPPED,
+        /** 已派发的手势 */
+        GESTURES_DISPATCHED,
+        /** 系统拒绝派发的手势 */
+        GESTURES_REJECTED,
+        /** 执行完成的手势 */
+        GESTURES_COMPLETED,
+        /** 被取消的手势 */
+        GESTURES_CANCELLED,
+        /** 界面变化后未派发就丢弃的手势 */
+        GESTURES_DROPPED,
+        /** 超时仍未收到系统回调的手势 */
+        GESTURES_LOST
+    }
+
+    /**
+     * 耗时直方图
+     */
+    public enum Timer {
+        /** 一次界面处理 */
+        PROCESS_SCREEN,
+        /** 获取快照（含局部更新或重建） */
+        SNAPSHOT_ACQUIRE,
+        /** 一次操作的执行 */
+        ACTION
+    }
+
+    /**
+     * 以2的幂划分桶的耗时直方图，单位微秒
+     * 第i个桶记录 [2^(i-1), 2^i) 微秒的样本，最后一个桶包含更大的值
+     */
+    public static final class Histogram {
+        static final int BUCKET_COUNT = 24;
+
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong sumMicros = new AtomicLong();
+        private final AtomicLong maxMicros = new AtomicLong();
+
+        void record(long micros) {
+            if (micros < 0) {
+                micros = 0;
+            }
+            int bucket = Math.min(BUCKET_COUNT - 1, 64 - Long.numberOfLeadingZeros(micros));
+            buckets.incrementAndGet(bucket);
+            count.incrementAndGet();
+            sumMicros.addAndGet(micros);
+
+            long max;
+            while (micros > (max = maxMicros.get())) {
+                if (maxMicros.compareAndSet(max, micros)) {
+                    break;
+                }
+            }
+        }
+
+        public long getCount() {
+            return count.get();
+        }
+
+        public long getMaxMicros() {
+            return maxMicros.get();
+        }
+
+        public long getMeanMicros() {
+            long n = count.get();
+            return n == 0 ? 0 : sumMicros.get() / n;
+        }
+
+        /**
+         * 估算分位数，返回样本所在桶的上界
+         *
+         * @param quantile 0到1之间
+         */
+        public long getPercentileMicros(double quantile) {
+            long total = 0;
+            long[] snapshot = new long[BUCKET_COUNT];
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                snapshot[i] = buckets.get(i);
+                total += snapshot[i];
+            }
+            if (total == 0) {
+                return 0;
+            }
+
+            long target = (long) Math.ceil(total * quantile);
+            long seen = 0;
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                seen += snapshot[i];
+                if (seen >= target) {
+                    return i == BUCKET_COUNT - 1 ? maxMicros.get() : 1L << i;
+                }
+            }
+            return maxMicros.get();
+        }
+
+        void reset() {
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                buckets.set(i, 0);
+            }
+            count.set(0);
+            sumMicros.set(0);
+            maxMicros.set(0);
+        }
+
+        JSONObject toJson() throws JSONException {
+            JSONObject json = new JSONObject();
+            json.put("count", getCount());
+            json.put("meanUs", getMeanMicros());
+            json.put("p50Us", getPercentileMicros(0.5));
+            json.put("p90Us", getPercentileMicros(0.9));
+            json.put("p99Us", getPercentileMicros(0.99));
+            json.put("maxUs", getMaxMicros());
+            JSONArray bucketArray = new JSONArray();
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                bucketArray.put(buckets.get(i));
+            }
+            json.put("buckets", bucketArray);
+            return json;
+        }
+    }
+
+    private static final Counter[] COUNTERS = Counter.values();
+    private static final Timer[] TIMERS = Timer.values();
+
+    private static final AtomicLongArray counters = new AtomicLongArray(COUNTERS.length);
+    private static final Histogram[] histograms = new Histogram[TIMERS.length];
+
+    // 元素类型 -> [命中, 未命中]
+    private static final ConcurrentHashMap<String, AtomicLongArray> lookups = new ConcurrentHashMap<>();
+    // 操作名 -> [成功, 失败]
+    private static final ConcurrentHashMap<String, AtomicLongArray> actions = new ConcurrentHashMap<>();
+
+    private static volatile long startTime = System.currentTimeMillis();
+
+    static {
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new Histogram();
+        }
+    }
+
+    public static void increment(Counter counter) {
+        counters.incrementAndGet(counter.ordinal());
+    }
+
+    public static void add(Counter counter, long delta) {
+        counters.addAndGet(counter.ordinal(), delta);
+    }
+
+    public static long get(Counter counter) {
+        return counters.get(counter.ordinal());
+    }
+
+    /**
+     * 记录一次耗时
+     *
+     * @param startNanos 开始时的 {@link System#nanoTime()}
+     */
+    public static void recordSince(Timer timer, long startNanos) {
+        histograms[timer.ordinal()].record((System.nanoTime() - startNanos) / 1000);
+    }
+
+    public static Histogram getHistogram(Timer timer) {
+        return histograms[timer.ordinal()];
+    }
+
+    /**
+     * 记录按元素类型查找的结果
+     */
+    public static void recordLookup(String elementType, boolean hit) {
+        pairFor(lookups, elementType).incrementAndGet(hit ? 0 : 1);
+    }
+
+    /**
+     * 记录一次操作的结果
+     */
+    public static void recordAction(String name, boolean success) {
+        increment(success ? Counter.ACTIONS_SUCCEEDED : Counter.ACTIONS_FAILED);
+        pairFor(actions, name).incrementAndGet(success ? 0 : 1);
+    }
+
+    private static AtomicLongArray pairFor(ConcurrentHashMap<String, AtomicLongArray> map, String key) {
+        AtomicLongArray pair = map.get(key);
+        if (pair == null) {
+            AtomicLongArray created = new AtomicLongArray(2);
+            pair = map.putIfAbsent(key, created);
+            if (pair == null) {
+                pair = created;
+            }
+        }
+        return pair;
+    }
+
+    /**
+     * 清空所有指标
+     */
+    public static void reset() {
+        for (int i = 0; i < COUNTERS.length; i++) {
+            counters.set(i, 0);
+        }
+        for (Histogram histogram : histograms) {
+            histogram.reset();
+        }
+        lookups.clear();
+        actions.clear();
+        startTime = System.currentTimeMillis();
+    }
+
+    /**
+     * 导出当前指标快照。各指标分别读取，彼此之间不保证是同一时刻的值
+     */
+    public static JSONObject toJson() throws JSONException {
+        JSONObject json = new JSONObject();
+        json.put("since", startTime);
+        json.put("time", System.currentTimeMillis());
+
+        JSONObject counterJson = new JSONObject();
+        for (Counter counter : COUNTERS) {
+            counterJson.put(counter.name().toLowerCase(Locale.ROOT), get(counter));
+        }
+        json.put("counters", counterJson);
+
+        JSONObject timerJson = new JSONObject();
+        for (Timer timer : TIMERS) {
+            timerJson.put(timer.name().toLowerCase(Locale.ROOT), getHistogram(timer).toJson());
+        }
+        json.put("timers", timerJson);
+
+        json.put("lookups", pairsToJson(lookups, "hit", "miss"));
+        json.put("actions", pairsToJson(actions, "success", "failure"));
+        return json;
+    }
+
+    private static JSONObject pairsToJson(Map<String, AtomicLongArray> map, String first, String second)
+            throws JSONException {
+        JSONObject json = new JSONObject();
+        for (Map.Entry<String, AtomicLongArray> entry : map.entrySet()) {
+            JSONObject pair = new JSONObject();
+            pair.put(first, entry.getValue().get(0));
+            pair.put(second, entry.getValue().get(1));
+            json.put(entry.getKey(), pair);
+        }
+        return json;
+    }
+
+    /**
+     * 把指标快照写入文件，先写临时文件再替换，读取方不会看到写了一半的内容
+     * 涉及文件读写，不要在主线程调用
+     *
+     * @return 是否写入成功
+     */
+    public static boolean exportTo(File file) {
+        File tmp = new File(file.getPath() + ".tmp");
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(tmp), Charset.forName("UTF-8"))) {
+            writer.write(toJson().toString());
+        } catch (IOException | JSONException e) {
+            Log.w(TAG, "导出指标失败", e);
+            return false;
+        }
+        if (!tmp.renameTo(file)) {
+            Log.w(TAG, "替换指标文件失败: " + file);
+            tmp.delete();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 简要统计，用于日志输出
+     */
+    public static String getSummary() {
+        Histogram process = getHistogram(Timer.PROCESS_SCREEN);
+        long screens = Math.max(1, get(Counter.SCREENS_PROCESSED));
+        return "事件 " + get(Counter.EVENTS_RECEIVED)
+                + "，界面处理 " + get(Counter.SCREENS_PROCESSED)
+                + "（p50 " + process.getPercentileMicros(0.5) + "us，p99 " + process.getPercentileMicros(0.99)
+                + "us，最大 " + process.getMaxMicros() + "us）"
+                + "，每个界面读取快照 " + (get(Counter.SNAPSHOT_REBUILDS) + get(Counter.SNAPSHOT_PATCHES)) / screens
+                + " 次、遍历节点 " + get(Counter.NODES_VISITED) / screens
+                + "，查找截断 " + get(Counter.SEARCHES_TRUNCATED)
+                + "，操作成功/失败 " + get(Counter.ACTIONS_SUCCEEDED) + "/" + get(Counter.ACTIONS_FAILED)
+                + "，手势完成/取消/丢失 " + get(Counter.GESTURES_COMPLETED) + "/" + get(Counter.GESTURES_CANCELLED)
+                + "/" + get(Counter.GESTURES_LOST);
+    }
+}
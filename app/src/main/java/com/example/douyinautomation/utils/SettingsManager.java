@@ -0,0 +1,110 @@
+package com.example.douyinautomation.utils;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 设置管理
+ *
+ * 集中定义偏好设置的文件名、键和默认值，MainActivity和无障碍服务共用。
+ * 创建时读取一次，之后通过OnSharedPreferenceChangeListener在设置变化时整体替换快照，
+ * {@link #get()} 只是读取一个引用，适合在事件处理等高频路径上调用。
+ */
+public class SettingsManager {
+
+    public static final String PREFS_NAME = "DouyinAutomationPrefs";
+
+    public static final String KEY_LIKE = "auto_like";
+    public static final String KEY_FOLLOW = "auto_follow";
+    public static final String KEY_COMMENT = "auto_comment";
+    public static final String KEY_SCROLL = "auto_scroll";
+    public static final String KEY_COMMENTS = "comments_list";
+
+    /**
+     * 设置变化回调，在主线程上执行
+     */
+    public interface OnSettingsChangedListener {
+        void onSettingsChanged(AutomationSettings settings);
+    }
+
+    private final SharedPreferences preferences;
+    private final AtomicReference<AutomationSettings> current = new AtomicReference<>();
+    private volatile OnSettingsChangedListener listener;
+
+    // SharedPreferences只弱引用监听器，必须由本对象持有
+    private final SharedPreferences.OnSharedPreferenceChangeListener preferenceListener = (prefs, key) -> {
+        if (isSettingsKey(key)) {
+            reload();
+        }
+    };
+
+    public SettingsManager(Context context) {
+        preferences = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        current.set(read(preferences));
+        preferences.registerOnSharedPreferenceChangeListener(preferenceListener);
+    }
+
+    /**
+     * 当前设置快照
+     */
+    public AutomationSettings get() {
+        return current.get();
+    }
+
+    public void setListener(OnSettingsChangedListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * 保存设置，快照立即更新，写入磁盘异步进行
+     */
+    public void save(AutomationSettings settings) {
+        current.set(settings);
+        preferences.edit()
+                .putBoolean(KEY_LIKE, settings.isAutoLike())
+                .putBoolean(KEY_FOLLOW, settings.isAutoFollow())
+                .putBoolean(KEY_COMMENT, settings.isAutoComment())
+                .putBoolean(KEY_SCROLL, settings.isAutoScroll())
+                .putString(KEY_COMMENTS, settings.getCommentsText())
+                .apply();
+    }
+
+    /**
+     * 停止监听设置变化
+     */
+    public void close() {
+        preferences.unregisterOnSharedPreferenceChangeListener(preferenceListener);
+        listener = null;
+    }
+
+    private void reload() {
+        AutomationSettings settings = read(preferences);
+        current.set(settings);
+        OnSettingsChangedListener l = listener;
+        if (l != null) {
+            l.onSettingsChanged(settings);
+        }
+    }
+
+    private static boolean isSettingsKey(String key) {
+        // 清空所有设置时key为null
+        return key == null
+                || KEY_LIKE.equals(key)
+                || KEY_FOLLOW.equals(key)
+                || KEY_COMMENT.equals(key)
+                || KEY_SCROLL.equals(key)
+                || KEY_COMMENTS.equals(key);
+    }
+
+    private static AutomationSettings read(SharedPreferences preferences) {
+        AutomationSettings defaults = AutomationSettings.DEFAULT;
+        return new AutomationSettings(
+                preferences.getBoolean(KEY_LIKE, defaults.isAutoLike()),
+                preferences.getBoolean(KEY_FOLLOW, defaults.isAutoFollow()),
+                preferences.getBoolean(KEY_COMMENT, defaults.isAutoComment()),
+                preferences.getBoolean(KEY_SCROLL, defaults.isAutoScroll()),
+                preferences.getString(KEY_COMMENTS, defaults.getCommentsText()));
+    }
+}
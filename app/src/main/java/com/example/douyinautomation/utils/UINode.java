@@ -0,0 +1,51 @@
+package com.example.douyinautomation.utils;
+
+import java.util.List;
+
+/**
+ * 界面树节点
+ *
+ * 只包含界面检测需要的只读属性，与平台无关：设备上是 {@link UITreeSnapshot} 中的节点，
+ * 离线测试、基准测试和回放使用 {@link MemoryUINode}。
+ * 根节点实现 {@link Indexed} 时，{@link DouyinUIMatcher} 按view-id直接取出候选节点，不再遍历整棵树。
+ */
+public interface UINode {
+
+    /**
+     * 维护了view-id索引的子树根节点
+     */
+    interface Indexed extends UINode {
+
+        /**
+         * 以本节点为根的子树中view-id为viewId的节点
+         *
+         * @return 按布局顺序排列，没有时返回空列表
+         */
+        List<? extends UINode> findByViewId(String viewId);
+    }
+
+    /**
+     * 资源ID，如"com.ss.android.ugc.aweme:id/title"，没有时返回null
+     */
+    String getViewId();
+
+    CharSequence getText();
+
+    CharSequence getContentDescription();
+
+    boolean isVisibleToUser();
+
+    /**
+     * 读取节点在屏幕上的位置
+     *
+     * @param bounds 长度至少为4，依次写入left、top、right、bottom
+     */
+    void getBoundsInScreen(int[] bounds);
+
+    int getChildCount();
+
+    /**
+     * @return 子节点，无法获取时返回null
+     */
+    UINode getChild(int index);
+}
@@ -0,0 +1,363 @@
+package com.example.douyinautomation.utils;
+
+import android.graphics.Rect;
+import android.view.accessibility.AccessibilityNodeInfo;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 界面树快照
+ *
+ * 一次遍历整棵窗口树，读取每个节点的 view-id、文本和内容描述，并建立 view-id 到节点的索引，
+ * 之后的元素查找都在快照上进行（见 {@link DouyinUIHelper}），不再发起跨进程的树查询。
+ * 根节点实现 {@link UINode.Indexed}，按元素类型查找时直接取出候选节点，不遍历整棵树。
+ * 界面局部变化时可以只重新读取变化的子树（见 {@link #updateSubtree}、{@link #updateNode}）。
+ * 快照通过 {@link NodeScope} 持有遍历过程中获取的所有节点（包括根节点），用完后需调用 {@link #recycle()}。
+ * 快照中的节点同时实现了 {@link UINode}（见 {@link #getRoot()}），可以交给与平台无关的逻辑处理，
+ * 读取属性不会发起跨进程查询。
+ */
+public class UITreeSnapshot {
+
+    /**
+     * 快照中的一个节点及其读取时的属性
+     */
+    private static class Entry implements UINode {
+        AccessibilityNodeInfo node;
+        Entry parent;
+        final List<Entry> children = new ArrayList<>(2);
+        String viewId;
+        String text;
+        String description;
+
+        Entry(AccessibilityNodeInfo node, Entry parent) {
+            this.node = node;
+            this.parent = parent;
+        }
+
+        @Override
+        public String getViewId() {
+            return viewId;
+        }
+
+        @Override
+        public CharSequence getText() {
+            return text;
+        }
+
+        @Override
+        public CharSequence getContentDescription() {
+            return description;
+        }
+
+        @Override
+        public boolean isVisibleToUser() {
+            return node.isVisibleToUser();
+        }
+
+        @Override
+        public void getBoundsInScreen(int[] bounds) {
+            Rect rect = new Rect();
+            node.getBoundsInScreen(rect);
+            bounds[0] = rect.left;
+            bounds[1] = rect.top;
+            bounds[2] = rect.right;
+            bounds[3] = rect.bottom;
+        }
+
+        @Override
+        public int getChildCount() {
+            return children.size();
+        }
+
+        @Override
+        public UINode getChild(int index) {
+            return children.get(index);
+        }
+    }
+
+    /**
+     * 根节点，按view-id查找时直接查快照的索引
+     */
+    private final class RootEntry extends Entry implements UINode.Indexed {
+
+        RootEntry(AccessibilityNodeInfo node) {
+            super(node, null);
+        }
+
+        @Override
+        public List<? extends UINode> findByViewId(String viewId) {
+            return entriesWithViewId(viewId);
+        }
+    }
+
+    /**
+     * 同一view-id的节点。整体读取时按布局顺序加入，局部更新加入的节点排在末尾，查询时再重新排序
+     */
+    private static final class ViewIdEntries {
+        final List<Entry> entries = new ArrayList<>(1);
+        boolean sorted = true;
+    }
+
+    private static final Comparator<Entry> LAYOUT_ORDER = new Comparator<Entry>() {
+        @Override
+        public int compare(Entry a, Entry b) {
+            return compareLayout(a, b);
+        }
+    };
+
+    private final NodeScope scope = new NodeScope();
+    private final Entry rootEntry;
+    private final int windowId;
+
+    // AccessibilityNodeInfo按源节点ID和窗口ID判等，可以用事件的source反查快照中的节点
+    private final Map<AccessibilityNodeInfo, Entry> entriesByNode = new HashMap<>();
+    private final Map<String, ViewIdEntries> entriesByViewId = new HashMap<>();
+
+    private boolean recycled = false;
+
+    private UITreeSnapshot(AccessibilityNodeInfo rootNode) {
+        this.rootEntry = new RootEntry(scope.track(rootNode));
+        this.windowId = rootNode.getWindowId();
+    }
+
+    /**
+     * 遍历以rootNode为根的树并建立索引，快照接管rootNode的所有权
+     *
+     * @param rootNode 根节点
+     * @return 快照，rootNode为null时返回null
+     */
+    public static UITreeSnapshot capture(AccessibilityNodeInfo rootNode) {
+        if (rootNode == null) {
+            return null;
+        }
+
+        UITreeSnapshot snapshot = new UITreeSnapshot(rootNode);
+        snapshot.readSubtree(snapshot.rootEntry, true);
+        return snapshot;
+    }
+
+    /**
+     * 从entry开始读取整棵子树，entry本身的节点已就位但尚未建立索引
+     *
+     * @param inLayoutOrder 是否从根节点整体读取，此时节点按布局顺序加入索引
+     * @return 读取的节点数
+     */
+    private int readSubtree(Entry entry, boolean inLayoutOrder) {
+        int count = 0;
+        ArrayDeque<Entry> stack = new ArrayDeque<>();
+        stack.push(entry);
+
+        while (!stack.isEmpty()) {
+            Entry current = stack.pop();
+            readProperties(current);
+            index(current, inLayoutOrder);
+            count++;
+
+            AccessibilityNodeInfo node = current.node;
+            int childCount = node.getChildCount();
+            for (int i = 0; i < childCount; i++) {
+                AccessibilityNodeInfo child = scope.getChild(node, i);
+                if (child != null) {
+                    current.children.add(new Entry(child, current));
+                }
+            }
+            // 逆序入栈，保证出栈顺序与布局顺序一致
+            for (int i = current.children.size() - 1; i >= 0; i--) {
+                stack.push(current.children.get(i));
+            }
+        }
+        return count;
+    }
+
+    private static void readProperties(Entry entry) {
+        AccessibilityNodeInfo node = entry.node;
+        entry.viewId = node.getViewIdResourceName();
+        entry.text = toNonEmptyString(node.getText());
+        entry.description = toNonEmptyString(node.getContentDescription());
+    }
+
+    private static String toNonEmptyString(CharSequence value) {
+        return value != null && value.length() > 0 ? value.toString() : null;
+    }
+
+    private void index(Entry entry, boolean inLayoutOrder) {
+        entriesByNode.put(entry.node, entry);
+        if (entry.viewId == null) {
+            return;
+        }
+        ViewIdEntries sameId = entriesByViewId.get(entry.viewId);
+        if (sameId == null) {
+            sameId = new ViewIdEntries();
+            entriesByViewId.put(entry.viewId, sameId);
+        } else if (!inLayoutOrder) {
+            sameId.sorted = false;
+        }
+        sameId.entries.add(entry);
+    }
+
+    private void unindex(Entry entry) {
+        entriesByNode.remove(entry.node);
+        if (entry.viewId == null) {
+            return;
+        }
+        ViewIdEntries sameId = entriesByViewId.get(entry.viewId);
+        if (sameId != null) {
+            sameId.entries.remove(entry);
+            if (sameId.entries.isEmpty()) {
+                entriesByViewId.remove(entry.viewId);
+            }
+        }
+    }
+
+    /**
+     * view-id为viewId的节点，按布局顺序排列
+     */
+    private List<Entry> entriesWithViewId(String viewId) {
+        ViewIdEntries sameId = entriesByViewId.get(viewId);
+        if (sameId == null) {
+            return Collections.emptyList();
+        }
+        if (!sameId.sorted) {
+            Collections.sort(sameId.entries, LAYOUT_ORDER);
+            sameId.sorted = true;
+        }
+        return sameId.entries;
+    }
+
+    /**
+     * 比较两个节点的布局顺序：先比较共同祖先下的分支位置，祖先排在后代之前
+     */
+    private static int compareLayout(Entry a, Entry b) {
+        if (a == b) {
+            return 0;
+        }
+        int depthA = depthOf(a);
+        int depthB = depthOf(b);
+        Entry x = a;
+        Entry y = b;
+        for (; depthA > depthB; depthA--) {
+            x = x.parent;
+        }
+        for (; depthB > depthA; depthB--) {
+            y = y.parent;
+        }
+        if (x == y) {
+            return x == a ? -1 : 1;
+        }
+        while (x.parent != y.parent) {
+            x = x.parent;
+            y = y.parent;
+        }
+        List<Entry> siblings = x.parent.children;
+        return siblings.indexOf(x) - siblings.indexOf(y);
+    }
+
+    private static int depthOf(Entry entry) {
+        int depth = 0;
+        for (Entry current = entry.parent; current != null; current = current.parent) {
+            depth++;
+        }
+        return depth;
+    }
+
+    /**
+     * 用新获取的节点替换快照中与之对应的子树，并重新读取该子树
+     *
+     * @param source 变化的子树根节点（通常来自事件的getSource()），成功时快照接管其所有权
+     * @return 重新读取的节点数，快照中没有对应节点时返回-1，此时source仍归调用方所有
+     */
+    public int updateSubtree(AccessibilityNodeInfo source) {
+        Entry entry = entriesByNode.get(source);
+        if (entry == null) {
+            return -1;
+        }
+
+        // 移除并回收旧子树
+        ArrayDeque<Entry> stack = new ArrayDeque<>();
+        stack.push(entry);
+        while (!stack.isEmpty()) {
+            Entry current = stack.pop();
+            unindex(current);
+            scope.release(current.node);
+            for (Entry child : current.children) {
+                stack.push(child);
+            }
+        }
+
+        entry.children.clear();
+        entry.node = scope.track(source);
+        return readSubtree(entry, false);
+    }
+
+    /**
+     * 只重新读取单个节点的属性（文本、内容描述变化），子节点保持不变
+     *
+     * @param source 变化的节点，成功时快照接管其所有权
+     * @return 是否找到并更新了对应节点，返回false时source仍归调用方所有
+     */
+    public boolean updateNode(AccessibilityNodeInfo source) {
+        Entry entry = entriesByNode.get(source);
+        if (entry == null) {
+            return false;
+        }
+
+        unindex(entry);
+        scope.release(entry.node);
+        entry.node = scope.track(source);
+        readProperties(entry);
+        index(entry, false);
+        return true;
+    }
+
+    public AccessibilityNodeInfo getRootNode() {
+        return rootEntry.node;
+    }
+
+    /**
+     * 以 {@link UINode} 形式访问快照，在快照回收前有效
+     */
+    public UINode getRoot() {
+        return rootEntry;
+    }
+
+    /**
+     * 取出 {@link #getRoot()} 返回的树中节点对应的无障碍节点，用于执行操作
+     *
+     * @return 对应的节点，node不属于快照时返回null
+     */
+    public static AccessibilityNodeInfo nodeOf(UINode node) {
+        return node instanceof Entry ? ((Entry) node).node : null;
+    }
+
+    public int getWindowId() {
+        return windowId;
+    }
+
+    /**
+     * 快照中的节点总数
+     */
+    public int size() {
+        return entriesByNode.size();
+    }
+
+    /**
+     * 回收快照持有的所有节点，之后不能再使用快照及其返回的节点
+     */
+    public void recycle() {
+        if (recycled) {
+            return;
+        }
+        recycled = true;
+
+        scope.close();
+        entriesByNode.clear();
+        entriesByViewId.clear();
+        rootEntry.children.clear();
+    }
+}
@@ -0,0 +1,212 @@
+package com.example.douyinautomation.utils;
+
+import android.view.accessibility.AccessibilityEvent;
+import android.view.accessibility.AccessibilityNodeInfo;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 界面树快照维护器
+ *
+ * 长期持有当前窗口的快照，根据无障碍事件的source记录局部变化，
+ * 在下次获取快照时只重新读取受影响的子树；窗口切换或无法定位变化位置时才整体重建。
+ * 非线程安全，所有方法需在同一线程调用。
+ */
+public class UITreeTracker {
+
+    // 积压的局部更新过多时，整体重建比逐个更新更便宜
+    private static final int MAX_PENDING_UPDATES = 32;
+
+    // 只改变节点自身属性、不影响子树结构的变化类型
+    private static final int NODE_ONLY_CHANGE_TYPES = AccessibilityEvent.CONTENT_CHANGE_TYPE_TEXT
+            | AccessibilityEvent.CONTENT_CHANGE_TYPE_CONTENT_DESCRIPTION
+            | AccessibilityEvent.CONTENT_CHANGE_TYPE_STATE_DESCRIPTION;
+
+    private static final class PendingUpdate {
+        final AccessibilityNodeInfo source;
+        boolean subtree;
+
+        PendingUpdate(AccessibilityNodeInfo source, boolean subtree) {
+            this.source = source;
+            this.subtree = subtree;
+        }
+    }
+
+    // 持有尚未应用到快照的事件source
+    private final NodeScope pendingScope = new NodeScope();
+    private UITreeSnapshot snapshot;
+    private boolean rebuildNeeded = true;
+    private final List<PendingUpdate> pendingUpdates = new ArrayList<>();
+
+    private long fullRebuilds = 0;
+    private long subtreeUpdates = 0;
+    private long nodeUpdates = 0;
+    private long nodesReread = 0;
+
+    /**
+     * 该类型的事件是否可能改变界面树，其他事件无需交给维护器
+     */
+    public static boolean isTreeEvent(int eventType) {
+        return eventType == AccessibilityEvent.TYPE_WINDOW_STATE_CHANGED
+                || eventType == AccessibilityEvent.TYPE_WINDOW_CONTENT_CHANGED
+                || eventType == AccessibilityEvent.TYPE_VIEW_SCROLLED;
+    }
+
+    /**
+     * 记录一个事件带来的变化，不会立即读取界面树
+     */
+    public void onEvent(AccessibilityEvent event) {
+        switch (event.getEventType()) {
+            case AccessibilityEvent.TYPE_WINDOW_STATE_CHANGED:
+                invalidate();
+                break;
+            case AccessibilityEvent.TYPE_WINDOW_CONTENT_CHANGED:
+                int changeTypes = event.getContentChangeTypes();
+                boolean subtree = changeTypes == AccessibilityEvent.CONTENT_CHANGE_TYPE_UNDEFINED
+                        || (changeTypes & ~NODE_ONLY_CHANGE_TYPES) != 0;
+                recordChange(event, subtree);
+                break;
+            case AccessibilityEvent.TYPE_VIEW_SCROLLED:
+                // 列表滚动会回收和重新绑定子视图
+                recordChange(event, true);
+                break;
+        }
+    }
+
+    private void recordChange(AccessibilityEvent event, boolean subtree) {
+        // 没有快照、已需要重建或是其他窗口的变化，都无需记录
+        if (snapshot == null || rebuildNeeded || event.getWindowId() != snapshot.getWindowId()) {
+            return;
+        }
+        if (pendingUpdates.size() >= MAX_PENDING_UPDATES) {
+            invalidate();
+            return;
+        }
+
+        AccessibilityNodeInfo source = pendingScope.getSource(event);
+        if (source == null) {
+            invalidate();
+            return;
+        }
+
+        // 同一节点的多次变化只保留一条
+        for (PendingUpdate pending : pendingUpdates) {
+            if (pending.source.equals(source)) {
+                pending.subtree |= subtree;
+                pendingScope.release(source);
+                return;
+            }
+        }
+        pendingUpdates.add(new PendingUpdate(source, subtree));
+    }
+
+    /**
+     * 标记快照失效，下次获取时整体重建
+     */
+    public void invalidate() {
+        rebuildNeeded = true;
+        clearPendingUpdates();
+    }
+
+    /**
+     * 获取与当前窗口一致的快照
+     *
+     * @param rootNode 当前活动窗口的根节点，所有权交给维护器
+     * @return 快照，rootNode为null时返回null。快照在下次调用本方法或 {@link #release()} 之前有效，调用方不能回收
+     */
+    public UITreeSnapshot acquire(AccessibilityNodeInfo rootNode) {
+        if (rootNode == null) {
+            return null;
+        }
+
+        if (snapshot != null && !rebuildNeeded && rootNode.equals(snapshot.getRootNode())) {
+            long start = HelperCallBreakdown.begin();
+            boolean patched = applyPendingUpdates();
+            HelperCallBreakdown.end(HelperCallBreakdown.Call.SNAPSHOT_PATCH, start);
+            if (patched) {
+                // 快照沿用原来的根节点，新获取的根节点不再需要
+                NodeScope.recycle(rootNode);
+                return snapshot;
+            }
+        }
+
+        long start = HelperCallBreakdown.begin();
+        rebuild(rootNode);
+        HelperCallBreakdown.end(HelperCallBreakdown.Call.SNAPSHOT_REBUILD, start);
+        return snapshot;
+    }
+
+    private boolean applyPendingUpdates() {
+        for (int i = 0; i < pendingUpdates.size(); i++) {
+            PendingUpdate pending = pendingUpdates.get(i);
+            boolean applied;
+            if (pending.subtree) {
+                int count = snapshot.updateSubtree(pending.source);
+                applied = count >= 0;
+                if (applied) {
+                    subtreeUpdates++;
+                    nodesReread += count;
+                    ServiceMetrics.add(ServiceMetrics.Counter.NODES_READ, count);
+                }
+            } else {
+                applied = snapshot.updateNode(pending.source);
+                if (applied) {
+                    nodeUpdates++;
+                    nodesReread++;
+                    ServiceMetrics.increment(ServiceMetrics.Counter.NODES_READ);
+                }
+            }
+
+            if (applied) {
+                ServiceMetrics.increment(ServiceMetrics.Counter.SNAPSHOT_PATCHES);
+                // 节点已由快照接管
+                pendingScope.detach(pending.source);
+            } else {
+                // 变化的节点不在快照中（新出现的视图等），回退为整体重建
+                pendingUpdates.subList(0, i).clear();
+                return false;
+            }
+        }
+        pendingUpdates.clear();
+        return true;
+    }
+
+    private void rebuild(AccessibilityNodeInfo rootNode) {
+        clearPendingUpdates();
+        if (snapshot != null) {
+            snapshot.recycle();
+        }
+        snapshot = UITreeSnapshot.capture(rootNode);
+        rebuildNeeded = false;
+        fullRebuilds++;
+        nodesReread += snapshot.size();
+        ServiceMetrics.increment(ServiceMetrics.Counter.SNAPSHOT_REBUILDS);
+        ServiceMetrics.add(ServiceMetrics.Counter.NODES_READ, snapshot.size());
+    }
+
+    private void clearPendingUpdates() {
+        pendingScope.close();
+        pendingUpdates.clear();
+    }
+
+    /**
+     * 释放当前快照和所有未处理的变化
+     */
+    public void release() {
+        clearPendingUpdates();
+        if (snapshot != null) {
+            snapshot.recycle();
+            snapshot = null;
+        }
+        rebuildNeeded = true;
+    }
+
+    /**
+     * 统计信息，用于日志输出
+     */
+    public String getStats() {
+        return "整体重建 " + fullRebuilds + "，子树更新 " + subtreeUpdates
+                + "，节点更新 " + nodeUpdates + "，重新读取节点 " + nodesReread;
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.douyinautomation.utils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 视频指纹
+ *
+ * 用当前可见视频的作者名和文案计算一个64位指纹，点赞数、评论数等计数变化不会影响指纹，
+ * 同一个视频的界面反复刷新时指纹保持不变。
+ * 配合 {@link RecentVideos} 判断视频是否已经处理过。与平台无关，离线回放时同样可用。
+ */
+public class VideoFingerprint {
+
+    /**
+     * 无法计算指纹（界面上没有作者名和文案）
+     */
+    public static final long UNKNOWN = 0;
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    /**
+     * 计算当前可见视频的指纹
+     *
+     * @param matcher 查找作者名和文案使用的匹配器
+     * @param profile 元素ID配置
+     * @param rootNode 界面树根节点
+     * @return 指纹，找不到作者名和文案时返回 {@link #UNKNOWN}
+     */
+    public static long compute(DouyinUIMatcher matcher, SelectorProfile profile, UINode rootNode) {
+        if (rootNode == null) {
+            return UNKNOWN;
+        }
+
+        CharSequence author = textOf(matcher.findNodeByType(profile, rootNode, "author_name", true));
+        CharSequence caption = textOf(matcher.findNodeByType(profile, rootNode, "video_desc", true));
+        if (author == null && caption == null) {
+            return UNKNOWN;
+        }
+
+        long hash = FNV_OFFSET_BASIS;
+        hash = mix(hash, author);
+        // 分隔符，避免"ab"+"c"与"a"+"bc"相同
+        hash = (hash ^ 0xff) * FNV_PRIME;
+        hash = mix(hash, caption);
+        return hash == UNKNOWN ? 1 : hash;
+    }
+
+    private static CharSequence textOf(UINode node) {
+        if (node == null) {
+            return null;
+        }
+        CharSequence text = node.getText();
+        return text != null && text.length() > 0 ? text : node.getContentDescription();
+    }
+
+    private static long mix(long hash, CharSequence value) {
+        if (value == null) {
+            return hash;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            hash = (hash ^ value.charAt(i)) * FNV_PRIME;
+        }
+        return hash;
+    }
+
+    /**
+     * 最近处理过的视频，容量有限，按最近访问淘汰
+     * 非线程安全。
+     */
+    public static class RecentVideos {
+        private final Map<Long, Boolean> seen;
+
+        public RecentVideos(final int capacity) {
+            seen = new LinkedHashMap<Long, Boolean>(capacity, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, Boolean> eldest) {
+                    return size() > capacity;
+                }
+            };
+        }
+
+        /**
+         * 记录一个视频
+         *
+         * @return 该视频最近是否没有出现过
+         */
+        public boolean add(long fingerprint) {
+            return seen.put(fingerprint, Boolean.TRUE) == null;
+        }
+
+        public boolean contains(long fingerprint) {
+            return seen.containsKey(fingerprint);
+        }
+
+        public void clear() {
+            seen.clear();
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.douyinautomation.benchmark;
+
+import com.example.douyinautomation.utils.DouyinUIMatcher;
+import com.example.douyinautomation.utils.MemoryUINode;
+import com.example.douyinautomation.utils.SelectorProfile;
+import com.example.douyinautomation.utils.UINode;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DouyinUIHelper查找逻辑的基准测试
+ *
+ * 在500到5000个节点的合成视频流界面树上测量按类型查找、按文本查找和界面检测，
+ * 分别覆盖评论面板关闭（视频流）和打开两种界面。
+ * 内存树与设备上的快照一样提供view-id索引，按类型查找走索引，按文本查找遍历整棵树。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DouyinUIMatcherBenchmark {
+
+    @Param({"500", "1000", "2500", "5000"})
+    public int nodeCount;
+
+    @Param({"false", "true"})
+    public boolean commentPanel;
+
+    private MemoryUINode root;
+    private SelectorProfile profile;
+    private DouyinUIMatcher matcher;
+
+    @Setup
+    public void setUp() {
+        root = FeedTrees.build(nodeCount, commentPanel, 42);
+        profile = FeedTrees.defaultProfile();
+        matcher = new DouyinUIMatcher();
+    }
+
+    @Benchmark
+    public UINode findNodeByType() {
+        return matcher.findNodeByType(profile, root, "like_button", false);
+    }
+
+    @Benchmark
+    public UINode findVisibleNodeByType() {
+        return matcher.findNodeByType(profile, root, "video_desc", true);
+    }
+
+    /**
+     * 视频流中不存在的元素，所有候选ID都查不到
+     */
+    @Benchmark
+    public UINode findNodeByTypeMissing() {
+        return matcher.findNodeByType(profile, root, "comment_edit", false);
+    }
+
+    @Benchmark
+    public List<UINode> findNodesByText() {
+        return matcher.findNodesByText(root, "评论", Integer.MAX_VALUE);
+    }
+
+    @Benchmark
+    public boolean isInVideoPlayingScreen() {
+        return matcher.isInVideoPlayingScreen(profile, root);
+    }
+
+    @Benchmark
+    public boolean isInCommentScreen() {
+        return matcher.isInCommentScreen(profile, root);
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.douyinautomation.benchmark;
+
+import com.example.douyinautomation.utils.MemoryUINode;
+import com.example.douyinautomation.utils.SelectorProfile;
+
+import org.json.JSONException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+
+/**
+ * 合成的抖音视频流界面树
+ *
+ * 结构参照真实界面：顶部频道栏、预加载了前后视频的ViewPager（只有中间一页可见）、底部导航栏。
+ * 每页的装饰性子树（弹幕、贴纸、进度条等）用固定种子随机生成，用来把整棵树填充到指定节点数。
+ */
+final class FeedTrees {
+
+    private static final String PKG = "com.ss.android.ugc.aweme:id/";
+
+    // 预加载的视频页数，中间一页为当前视频
+    private static final int PAGE_COUNT = 3;
+
+    // app的assets目录在build.gradle中作为资源目录加入
+    private static final String PROFILE_RESOURCE = "/selector_profiles.json";
+
+    private FeedTrees() {
+    }
+
+    /**
+     * app随安装包发布的assets/selector_profiles.json中的默认配置，与设备上使用的元素ID一致
+     */
+    static SelectorProfile defaultProfile() {
+        try (InputStream in = FeedTrees.class.getResourceAsStream(PROFILE_RESOURCE)) {
+            if (in == null) {
+                throw new IllegalStateException("找不到元素ID配置: " + PROFILE_RESOURCE);
+            }
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                bytes.write(buffer, 0, read);
+            }
+            SelectorProfile profile = SelectorProfile.fromJson(bytes.toString("UTF-8"), 0);
+            if (profile == null) {
+                throw new IllegalStateException("元素ID配置中没有默认配置");
+            }
+            return profile;
+        } catch (IOException | JSONException e) {
+            throw new IllegalStateException("读取元素ID配置失败", e);
+        }
+    }
+
+    /**
+     * 构造约nodeCount个节点的视频流界面树
+     *
+     * @param commentPanel 是否打开评论面板
+     */
+    static MemoryUINode build(int nodeCount, boolean commentPanel, long seed) {
+        Random random = new Random(seed);
+        MemoryUINode root = new MemoryUINode(null);
+
+        MemoryUINode tabs = root.addChild(new MemoryUINode(PKG + "tab_layout"));
+        for (String tab : new String[]{"同城", "关注", "商城", "推荐"}) {
+            tabs.addChild(new MemoryUINode(PKG + "tab_text")).setText(tab);
+        }
+
+        MemoryUINode pager = root.addChild(new MemoryUINode(PKG + "viewpager"));
+        MemoryUINode[] pages = new MemoryUINode[PAGE_COUNT];
+        for (int i = 0; i < PAGE_COUNT; i++) {
+            boolean current = i == PAGE_COUNT / 2;
+            pages[i] = pager.addChild(new MemoryUINode(PKG + "video_page"));
+            pages[i].setVisibleToUser(current);
+            pages[i].addChild(new MemoryUINode(PKG + "video_view")).setVisibleToUser(current);
+        }
+
+        MemoryUINode navigation = root.addChild(new MemoryUINode(PKG + "main_bottom_tab"));
+        for (String item : new String[]{"首页", "朋友", "拍摄", "消息", "我"}) {
+            navigation.addChild(new MemoryUINode(PKG + "tab_text")).setText(item);
+        }
+
+        MemoryUINode panel = null;
+        if (commentPanel) {
+            panel = root.addChild(new MemoryUINode(PKG + "comment_panel"));
+            panel.addChild(new MemoryUINode(PKG + "comment_title")).setText("全部评论");
+        }
+
+        // 固定部分之外的节点分给各视频页的装饰子树和评论列表
+        int fixed = root.countNodes() + PAGE_COUNT * 11 + (commentPanel ? 2 : 0);
+        int budget = Math.max(0, nodeCount - fixed);
+        int perPage = commentPanel ? budget / (PAGE_COUNT + 1) : budget / PAGE_COUNT;
+
+        for (int i = 0; i < PAGE_COUNT; i++) {
+            boolean current = i == PAGE_COUNT / 2;
+            MemoryUINode overlay = pages[i].addChild(new MemoryUINode(PKG + "overlay"));
+            fill(overlay, perPage, current, random);
+            addVideoControls(pages[i], i, current);
+        }
+
+        if (panel != null) {
+            MemoryUINode list = panel.addChild(new MemoryUINode(PKG + "comment_list"));
+            fill(list, Math.max(0, budget - perPage * PAGE_COUNT), true, random);
+            panel.addChild(new MemoryUINode(PKG + "a9c")).setText("善语结善缘，恶言伤人心");
+            panel.addChild(new MemoryUINode(PKG + "a7c")).setContentDescription("发送");
+        }
+        return root;
+    }
+
+    /**
+     * 右侧按钮栏和底部作者、文案，共11个节点
+     */
+    private static void addVideoControls(MemoryUINode page, int index, boolean visible) {
+        MemoryUINode column = page.addChild(new MemoryUINode(PKG + "right_column"));
+        column.addChild(new MemoryUINode(PKG + "avatar")).setContentDescription("作者头像");
+        column.addChild(new MemoryUINode(PKG + "bb1")).setContentDescription("关注");
+        column.addChild(new MemoryUINode(PKG + "bz3")).setContentDescription("未点赞，喜欢" + (index + 1) + ".2万");
+        column.addChild(new MemoryUINode(PKG + "d0l")).setContentDescription("评论" + (index + 1) * 317);
+        column.addChild(new MemoryUINode(PKG + "dq8")).setContentDescription("分享");
+        column.addChild(new MemoryUINode(PKG + "music_cover")).setContentDescription("音乐");
+
+        MemoryUINode info = page.addChild(new MemoryUINode(PKG + "bottom_info"));
+        info.addChild(new MemoryUINode(PKG + "title")).setText("@作者" + index);
+        info.addChild(new MemoryUINode(PKG + "desc")).setText("第" + index + "个视频的文案 #话题");
+
+        setVisible(column, visible);
+        setVisible(info, visible);
+    }
+
+    private static void setVisible(MemoryUINode node, boolean visible) {
+        node.setVisibleToUser(visible);
+        for (int i = 0; i < node.getChildCount(); i++) {
+            node.getChild(i).setVisibleToUser(visible);
+        }
+    }
+
+    /**
+     * 在parent下随机生成count个节点，分支数1到4，约三成节点带文本
+     */
+    private static void fill(MemoryUINode parent, int count, boolean visible, Random random) {
+        MemoryUINode[] open = new MemoryUINode[count + 1];
+        int openCount = 0;
+        open[openCount++] = parent;
+        for (int created = 0; created < count; created++) {
+            MemoryUINode container = open[random.nextInt(openCount)];
+            MemoryUINode node = container.addChild(new MemoryUINode(
+                    random.nextInt(4) == 0 ? PKG + "x" + random.nextInt(200) : null));
+            node.setVisibleToUser(visible);
+            if (random.nextInt(10) < 3) {
+                node.setText("弹幕" + random.nextInt(1000));
+            }
+            if (container.getChildCount() >= 1 + random.nextInt(4)) {
+                // 已有足够子节点的容器不再扩展，避免树退化成很宽的一层
+                for (int i = 0; i < openCount; i++) {
+                    if (open[i] == container) {
+                        open[i] = open[--openCount];
+                        break;
+                    }
+                }
+            }
+            open[openCount++] = node;
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package com.example.douyinautomation.replay;
+
+import com.example.douyinautomation.utils.ActionPlanner;
+import com.example.douyinautomation.utils.AutomationSettings;
+import com.example.douyinautomation.utils.ScreenRecording;
+import com.example.douyinautomation.utils.SelectorProfile;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 回放引擎
+ *
+ * 按录制顺序读取事件和界面树，把每棵界面树交给 {@link ActionPlanner} 做界面检测和操作决策，
+ * 记录每次决策的结果和耗时。回放之间不共享状态，每个录制文件使用新的引擎。
+ * 回放不执行操作，设备上操作结束和滑动完成的时间点按录制中的标记通知决策，与设备上的状态保持一致；
+ * 没有标记的旧录制中，开始的操作只会因切换视频或离开视频界面而结束。
+ */
+public class ReplayEngine {
+
+    /**
+     * 一次决策
+     */
+    public static final class Step {
+        public final long offsetMs;
+        public final int windowId;
+        public final int nodeCount;
+        public final ActionPlanner.Decision decision;
+        public final long decideNanos;
+
+        Step(long offsetMs, int windowId, int nodeCount, ActionPlanner.Decision decision, long decideNanos) {
+            this.offsetMs = offsetMs;
+            this.windowId = windowId;
+            this.nodeCount = nodeCount;
+            this.decision = decision;
+            this.decideNanos = decideNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("+%8.3fs 窗口 %d，%5d 个节点，%6.1fus  %s",
+                    offsetMs / 1000.0, windowId, nodeCount, decideNanos / 1000.0, decision);
+        }
+    }
+
+    /**
+     * 回放报告
+     */
+    public static final class Report {
+        public final String name;
+        public final List<Step> steps = new ArrayList<>();
+        public final Map<Integer, Integer> eventsByType = new TreeMap<>();
+        public final Map<ActionPlanner.Verdict, Integer> verdicts = new EnumMap<>(ActionPlanner.Verdict.class);
+        public int eventCount = 0;
+        public int markerCount = 0;
+        public long durationMs = 0;
+
+        Report(String name) {
+            this.name = name;
+        }
+
+        /**
+         * 决策耗时的分位数，单位纳秒
+         */
+        public long percentileNanos(double quantile) {
+            if (steps.isEmpty()) {
+                return 0;
+            }
+            long[] values = new long[steps.size()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = steps.get(i).decideNanos;
+            }
+            Arrays.sort(values);
+            int index = (int) Math.ceil(quantile * values.length) - 1;
+            return values[Math.max(0, Math.min(values.length - 1, index))];
+        }
+
+        public String summary() {
+            return String.format("%s：时长 %.1fs，事件 %d，界面 %d，决策 %s，耗时 p50 %.1fus / p90 %.1fus / 最大 %.1fus",
+                    name, durationMs / 1000.0, eventCount, steps.size(), verdicts,
+                    percentileNanos(0.5) / 1000.0, percentileNanos(0.9) / 1000.0, percentileNanos(1.0) / 1000.0);
+        }
+
+        public JSONObject toJson() throws JSONException {
+            JSONObject json = new JSONObject();
+            json.put("name", name);
+            json.put("durationMs", durationMs);
+            json.put("events", eventCount);
+            json.put("markers", markerCount);
+
+            JSONObject eventTypes = new JSONObject();
+            for (Map.Entry<Integer, Integer> entry : eventsByType.entrySet()) {
+                eventTypes.put(Integer.toString(entry.getKey()), entry.getValue());
+            }
+            json.put("eventsByType", eventTypes);
+
+            JSONObject verdictJson = new JSONObject();
+            for (Map.Entry<ActionPlanner.Verdict, Integer> entry : verdicts.entrySet()) {
+                verdictJson.put(entry.getKey().name(), entry.getValue());
+            }
+            json.put("verdicts", verdictJson);
+
+            JSONObject timing = new JSONObject();
+            timing.put("p50Us", percentileNanos(0.5) / 1000.0);
+            timing.put("p90Us", percentileNanos(0.9) / 1000.0);
+            timing.put("maxUs", percentileNanos(1.0) / 1000.0);
+            json.put("decideTiming", timing);
+
+            JSONArray decisions = new JSONArray();
+            for (Step step : steps) {
+                JSONObject item = new JSONObject();
+                item.put("offsetMs", step.offsetMs);
+                item.put("windowId", step.windowId);
+                item.put("nodes", step.nodeCount);
+                item.put("screen", step.decision.screen.name());
+                item.put("commentPanel", step.decision.commentPanelOpen);
+                item.put("verdict", step.decision.verdict.name());
+                item.put("cancelActive", step.decision.cancelActive);
+                item.put("fingerprint", Long.toHexString(step.decision.fingerprint));
+                item.put("steps", new JSONArray(step.decision.steps));
+                item.put("decideUs", step.decideNanos / 1000.0);
+                decisions.put(item);
+            }
+            json.put("decisions", decisions);
+            return json;
+        }
+    }
+
+    private final SelectorProfile profile;
+    private final AutomationSettings settings;
+    private final ActionPlanner planner;
+
+    /**
+     * @param profile 元素ID配置
+     * @param settings 回放时使用的设置
+     * @param recentCapacity 记住最近处理过的视频数，与服务中的设置保持一致
+     */
+    public ReplayEngine(SelectorProfile profile, AutomationSettings settings, int recentCapacity) {
+        this.profile = profile;
+        this.settings = settings;
+        this.planner = new ActionPlanner(recentCapacity);
+    }
+
+    /**
+     * 回放整个录制文件
+     *
+     * @param name 报告中显示的名称
+     */
+    public Report replay(String name, ScreenRecording.Reader reader) throws IOException {
+        Report report = new Report(name);
+        int activeRunId = 0;
+        long firstTime = -1;
+        ScreenRecording.Record record;
+        while ((record = reader.next()) != null) {
+            if (firstTime < 0) {
+                firstTime = record.timeMs;
+            }
+            report.durationMs = record.timeMs - firstTime;
+
+            if (record.isMarker()) {
+                report.markerCount++;
+                if (record.marker == ScreenRecording.MARKER_RUN_FINISHED) {
+                    planner.onRunFinished(activeRunId);
+                } else if (record.marker == ScreenRecording.MARKER_SCROLLED) {
+                    planner.onScrolled();
+                }
+                continue;
+            }
+            if (!record.isTree()) {
+                report.eventCount++;
+                Integer count = report.eventsByType.get(record.event.eventType);
+                report.eventsByType.put(record.event.eventType, count == null ? 1 : count + 1);
+                continue;
+            }
+
+            long start = System.nanoTime();
+            ActionPlanner.Decision decision = planner.decide(record.tree, profile, settings, true);
+            long elapsed = System.nanoTime() - start;
+            if (decision.verdict == ActionPlanner.Verdict.START) {
+                activeRunId = decision.runId;
+            }
+
+            report.steps.add(new Step(record.timeMs - firstTime, record.windowId, record.nodeCount, decision, elapsed));
+            Integer count = report.verdicts.get(decision.verdict);
+            report.verdicts.put(decision.verdict, count == null ? 1 : count + 1);
+        }
+        return report;
+    }
+}
@@ -0,0 +1,175 @@
+package com.example.douyinautomation.replay;
+
+import com.example.douyinautomation.utils.AutomationSettings;
+import com.example.douyinautomation.utils.ScreenRecording;
+import com.example.douyinautomation.utils.SelectorProfile;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 回放命令行入口
+ *
+ * 用法：ReplayMain [--profile 配置文件] [--version 抖音versionCode] [--settings like,follow,comment,scroll]
+ *                  [--json 报告文件] [--quiet] [--expect | --update-expected] 录制文件...
+ *
+ * --expect 把每个录制文件的决策与同名的 .expected 文件（每行一次决策）逐行比较，有差异时以状态1退出，
+ * 供CI检查元素ID配置和决策逻辑的改动；--update-expected 用本次的决策重写 .expected 文件。
+ */
+public class ReplayMain {
+
+    private static final String DEFAULT_PROFILE = "app/src/main/assets/selector_profiles.json";
+    private static final String EXPECTED_SUFFIX = ".expected";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    // 与DouyinAccessibilityService中的RECENT_VIDEO_CAPACITY一致
+    private static final int RECENT_VIDEO_CAPACITY = 64;
+
+    public static void main(String[] args) throws IOException, JSONException {
+        String profilePath = DEFAULT_PROFILE;
+        long versionCode = 0;
+        AutomationSettings settings = AutomationSettings.DEFAULT;
+        String jsonPath = null;
+        boolean quiet = false;
+        boolean expect = false;
+        boolean updateExpected = false;
+        List<String> files = new ArrayList<>();
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--profile":
+                    profilePath = args[++i];
+                    break;
+                case "--version":
+                    versionCode = Long.parseLong(args[++i]);
+                    break;
+                case "--settings":
+                    settings = parseSettings(args[++i]);
+                    break;
+                case "--json":
+                    jsonPath = args[++i];
+                    break;
+                case "--quiet":
+                    quiet = true;
+                    break;
+                case "--expect":
+                    expect = true;
+                    break;
+                case "--update-expected":
+                    updateExpected = true;
+                    break;
+                default:
+                    files.add(args[i]);
+            }
+        }
+        if (files.isEmpty()) {
+            System.err.println("用法: ReplayMain [--profile 配置文件] [--version versionCode] "
+                    + "[--settings like,follow,comment,scroll] [--json 报告文件] [--quiet] "
+                    + "[--expect | --update-expected] 录制文件...");
+            System.exit(2);
+        }
+
+        String profileJson = new String(Files.readAllBytes(Paths.get(profilePath)), UTF_8);
+        JSONArray reports = new JSONArray();
+        int mismatches = 0;
+        for (String file : files) {
+            // 每个文件重新加载配置，命中统计互不影响
+            SelectorProfile profile = SelectorProfile.fromJson(profileJson, versionCode);
+            if (profile == null) {
+                System.err.println("没有与版本 " + versionCode + " 匹配的元素ID配置");
+                System.exit(2);
+            }
+
+            ReplayEngine.Report report;
+            try (InputStream in = new BufferedInputStream(new FileInputStream(file));
+                 ScreenRecording.Reader reader = new ScreenRecording.Reader(in)) {
+                report = new ReplayEngine(profile, settings, RECENT_VIDEO_CAPACITY).replay(file, reader);
+            }
+
+            if (!quiet) {
+                for (ReplayEngine.Step step : report.steps) {
+                    System.out.println(step);
+                }
+            }
+            System.out.println(report.summary());
+            reports.put(report.toJson());
+
+            Path expectedPath = Paths.get(file + EXPECTED_SUFFIX);
+            if (updateExpected) {
+                Files.write(expectedPath, decisionLines(report), UTF_8);
+                System.out.println("已更新 " + expectedPath);
+            } else if (expect && !matchesExpected(report, expectedPath)) {
+                mismatches++;
+            }
+        }
+
+        if (jsonPath != null) {
+            try (Writer writer = new OutputStreamWriter(Files.newOutputStream(Paths.get(jsonPath)), UTF_8)) {
+                writer.write(reports.toString(2));
+            }
+        }
+
+        if (mismatches > 0) {
+            System.err.println(mismatches + " 个录制文件的决策与预期不一致");
+            System.exit(1);
+        }
+    }
+
+    /**
+     * 每次决策一行，不含耗时，同一录制和配置下结果固定
+     */
+    private static List<String> decisionLines(ReplayEngine.Report report) {
+        List<String> lines = new ArrayList<>(report.steps.size());
+        for (ReplayEngine.Step step : report.steps) {
+            lines.add(step.decision.toString());
+        }
+        return lines;
+    }
+
+    /**
+     * 逐行比较决策与预期文件，输出第一处差异
+     */
+    private static boolean matchesExpected(ReplayEngine.Report report, Path expectedPath) throws IOException {
+        if (!Files.exists(expectedPath)) {
+            System.err.println(report.name + "：缺少预期文件 " + expectedPath + "，可用 --update-expected 生成");
+            return false;
+        }
+        List<String> expected = Files.readAllLines(expectedPath, UTF_8);
+        List<String> actual = decisionLines(report);
+        int count = Math.max(expected.size(), actual.size());
+        for (int i = 0; i < count; i++) {
+            String want = i < expected.size() ? expected.get(i) : "（无）";
+            String got = i < actual.size() ? actual.get(i) : "（无）";
+            if (!want.equals(got)) {
+                System.err.println(report.name + "：第 " + (i + 1) + " 次决策与预期不一致\n  预期: " + want
+                        + "\n  实际: " + got);
+                return false;
+            }
+        }
+        System.out.println(report.name + "：" + actual.size() + " 次决策与预期一致");
+        return true;
+    }
+
+    private static AutomationSettings parseSettings(String value) {
+        List<String> enabled = Arrays.asList(value.split(","));
+        return new AutomationSettings(
+                enabled.contains("like"),
+                enabled.contains("follow"),
+                enabled.contains("comment"),
+                enabled.contains("scroll"),
+                AutomationSettings.DEFAULT_COMMENTS);
+    }
+}
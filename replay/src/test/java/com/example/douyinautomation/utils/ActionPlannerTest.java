@@ -0,0 +1,96 @@
+package com.example.douyinautomation.utils;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ActionPlannerTest {
+
+    private final SelectorProfile profile = TestScreens.profile();
+    private ActionPlanner planner;
+
+    @Before
+    public void setUp() {
+        planner = new ActionPlanner(16);
+    }
+
+    private ActionPlanner.Decision decide(UINode screen) {
+        return planner.decide(screen, profile, AutomationSettings.DEFAULT, true);
+    }
+
+    @Test
+    public void startsOnceAndKeepsTheSameVideo() {
+        ActionPlanner.Decision start = decide(TestScreens.video("作者A", "文案A", 10));
+        assertEquals(ActionPlanner.Verdict.START, start.verdict);
+        assertEquals(Arrays.asList(ActionPlanner.STEP_LIKE, ActionPlanner.STEP_SCROLL), start.steps);
+
+        // 点赞数变化不算换了视频
+        assertEquals(ActionPlanner.Verdict.KEEP, decide(TestScreens.video("作者A", "文案A", 11)).verdict);
+    }
+
+    @Test
+    public void commentPanelKeepsTheRun() {
+        decide(TestScreens.video("作者A", "文案A", 10));
+        ActionPlanner.Decision decision = decide(TestScreens.withCommentPanel(TestScreens.video("作者A", "文案A", 10)));
+        assertEquals(ActionPlanner.Verdict.KEEP, decision.verdict);
+        assertTrue(decision.commentPanelOpen);
+    }
+
+    @Test
+    public void switchingVideosCancelsAndStarts() {
+        decide(TestScreens.video("作者A", "文案A", 10));
+        ActionPlanner.Decision decision = decide(TestScreens.video("作者B", "文案B", 10));
+        assertEquals(ActionPlanner.Verdict.START, decision.verdict);
+        assertTrue(decision.cancelActive);
+    }
+
+    @Test
+    public void leavingTheFeedCancels() {
+        decide(TestScreens.video("作者A", "文案A", 10));
+        ActionPlanner.Decision decision = decide(TestScreens.profilePage());
+        assertEquals(ActionPlanner.Verdict.CANCEL, decision.verdict);
+        assertTrue(decision.cancelActive);
+        assertEquals(ActionPlanner.Verdict.NONE, decide(TestScreens.profilePage()).verdict);
+    }
+
+    @Test
+    public void finishedVideoIsNotStartedAgain() {
+        ActionPlanner.Decision start = decide(TestScreens.video("作者A", "文案A", 10));
+        assertTrue(planner.onRunFinished(start.runId));
+        assertEquals(ActionPlanner.Verdict.SEEN, decide(TestScreens.video("作者A", "文案A", 11)).verdict);
+    }
+
+    @Test
+    public void supersededRunFinishingIsIgnored() {
+        ActionPlanner.Decision first = decide(TestScreens.video("作者A", "文案A", 10));
+        decide(TestScreens.video("作者B", "文案B", 10));
+        assertFalse(planner.onRunFinished(first.runId));
+        assertEquals(ActionPlanner.Verdict.KEEP, decide(TestScreens.video("作者B", "文案B", 10)).verdict);
+    }
+
+    @Test
+    public void videoWithoutFingerprintWaitsForScroll() {
+        ActionPlanner.Decision start = decide(TestScreens.video(null, null, 10));
+        assertEquals(ActionPlanner.Verdict.START, start.verdict);
+        assertEquals(VideoFingerprint.UNKNOWN, start.fingerprint);
+        planner.onRunFinished(start.runId);
+
+        // 操作结束后无法认出同一个视频，直到滑动完成前都不再开始
+        assertEquals(ActionPlanner.Verdict.SEEN, decide(TestScreens.video(null, null, 11)).verdict);
+        planner.onScrolled();
+        assertEquals(ActionPlanner.Verdict.START, decide(TestScreens.video(null, null, 3)).verdict);
+    }
+
+    @Test
+    public void nothingToDoWhenEverythingIsDisabled() {
+        AutomationSettings off = new AutomationSettings(false, false, false, false, "");
+        ActionPlanner.Decision decision = planner.decide(TestScreens.video("作者A", "文案A", 10), profile, off, true);
+        assertEquals(ActionPlanner.Verdict.NONE, decision.verdict);
+        assertEquals(0, planner.getVideoCount());
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.douyinautomation.utils;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ScreenRecordingTest {
+
+    private static final ScreenRecording.Event EVENT = new ScreenRecording.Event(
+            2048, 7, 1, "com.ss.android.ugc.aweme", "android.widget.FrameLayout");
+
+    private static byte[] record(MemoryUINode tree) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ScreenRecording.Writer writer = new ScreenRecording.Writer(bytes)) {
+            writer.writeEvent(1000, EVENT);
+            writer.writeTree(1016, 7, tree);
+            writer.writeMarker(1500, ScreenRecording.MARKER_SCROLLED);
+            writer.writeTree(2000, -3, tree);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static ScreenRecording.Reader reader(byte[] bytes) throws IOException {
+        return new ScreenRecording.Reader(new ByteArrayInputStream(bytes));
+    }
+
+    @Test
+    public void roundTrip() throws IOException {
+        MemoryUINode tree = TestScreens.video("作者A", "文案A", 10);
+        tree.getChild(0).setBounds(0, -20, 1080, 2400);
+
+        try (ScreenRecording.Reader reader = reader(record(tree))) {
+            ScreenRecording.Record event = reader.next();
+            assertEquals(1000, event.timeMs);
+            assertFalse(event.isTree());
+            assertEquals(EVENT.eventType, event.event.eventType);
+            assertEquals(EVENT.windowId, event.event.windowId);
+            assertEquals(EVENT.contentChangeTypes, event.event.contentChangeTypes);
+            assertEquals(EVENT.packageName, event.event.packageName);
+            assertEquals(EVENT.className, event.event.className);
+
+            ScreenRecording.Record first = reader.next();
+            assertEquals(1016, first.timeMs);
+            assertEquals(7, first.windowId);
+            assertEquals(tree.countNodes(), first.nodeCount);
+            assertSameTree(tree, first.tree);
+
+            ScreenRecording.Record marker = reader.next();
+            assertEquals(1500, marker.timeMs);
+            assertTrue(marker.isMarker());
+            assertEquals(ScreenRecording.MARKER_SCROLLED, marker.marker);
+
+            // 第二棵树的字符串都只写编号
+            ScreenRecording.Record second = reader.next();
+            assertEquals(2000, second.timeMs);
+            assertEquals(-3, second.windowId);
+            assertSameTree(tree, second.tree);
+
+            assertNull(reader.next());
+        }
+    }
+
+    @Test
+    public void truncatedLastRecordReadsAsEnd() throws IOException {
+        byte[] bytes = record(TestScreens.video("作者A", "文案A", 10));
+        try (ScreenRecording.Reader reader = reader(Arrays.copyOf(bytes, bytes.length - 3))) {
+            assertFalse(reader.next().isTree());
+            assertTrue(reader.next().isTree());
+            assertTrue(reader.next().isMarker());
+            assertNull(reader.next());
+        }
+    }
+
+    @Test
+    public void readsVersion1Files() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ScreenRecording.Writer writer = new ScreenRecording.Writer(bytes)) {
+            writer.writeEvent(5, EVENT);
+        }
+        byte[] data = bytes.toByteArray();
+        // 文件头：4字节魔数之后是版本号，版本1的记录格式与之后的版本相同
+        data[4] = 1;
+        try (ScreenRecording.Reader reader = reader(data)) {
+            assertEquals(EVENT.eventType, reader.next().event.eventType);
+            assertNull(reader.next());
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsOtherFiles() throws IOException {
+        reader("not a recording".getBytes("UTF-8"));
+    }
+
+    private static void assertSameTree(UINode expected, UINode actual) {
+        int[] expectedBounds = new int[4];
+        int[] actualBounds = new int[4];
+        expected.getBoundsInScreen(expectedBounds);
+        actual.getBoundsInScreen(actualBounds);
+        assertEquals(expected.getViewId(), actual.getViewId());
+        assertEquals(toStringOrNull(expected.getText()), toStringOrNull(actual.getText()));
+        assertEquals(toStringOrNull(expected.getContentDescription()), toStringOrNull(actual.getContentDescription()));
+        assertEquals(expected.isVisibleToUser(), actual.isVisibleToUser());
+        assertEquals(Arrays.toString(expectedBounds), Arrays.toString(actualBounds));
+        assertEquals(expected.getChildCount(), actual.getChildCount());
+        for (int i = 0; i < expected.getChildCount(); i++) {
+            assertSameTree(expected.getChild(i), actual.getChild(i));
+        }
+    }
+
+    private static String toStringOrNull(CharSequence value) {
+        return value != null ? value.toString() : null;
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.douyinautomation.utils;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 测试用的界面树
+ *
+ * 只包含决策用到的元素：右侧按钮栏、作者名、文案和评论面板，
+ * 当前视频前后各有一个预加载的不可见页面，与真实的视频流结构一致。
+ */
+final class TestScreens {
+
+    static final String PKG = "com.ss.android.ugc.aweme:id/";
+
+    private TestScreens() {
+    }
+
+    static SelectorProfile profile() {
+        Map<String, String[]> ids = new HashMap<>();
+        ids.put("like_button", new String[]{PKG + "bz3", PKG + "like_button"});
+        ids.put("comment_button", new String[]{PKG + "d0l", PKG + "comment_button"});
+        ids.put("comment_edit", new String[]{PKG + "a9c", PKG + "comment_edit_text"});
+        ids.put("author_name", new String[]{PKG + "title", PKG + "author_name"});
+        ids.put("video_desc", new String[]{PKG + "desc", PKG + "video_desc"});
+        return new SelectorProfile("test", -1, ids);
+    }
+
+    /**
+     * 视频播放界面
+     *
+     * @param author 作者名，为null时没有作者名节点
+     * @param caption 文案，为null时没有文案节点
+     * @param likes 点赞数，只影响按钮的内容描述
+     */
+    static MemoryUINode video(String author, String caption, int likes) {
+        MemoryUINode root = new MemoryUINode(null);
+        MemoryUINode pager = root.addChild(new MemoryUINode(PKG + "viewpager"));
+        addPage(pager, "上一个作者", "上一个视频", false, 0);
+        addPage(pager, author, caption, true, likes);
+        addPage(pager, "下一个作者", "下一个视频", false, 0);
+        return root;
+    }
+
+    /**
+     * 在视频界面上打开评论面板
+     */
+    static MemoryUINode withCommentPanel(MemoryUINode video) {
+        MemoryUINode panel = video.addChild(new MemoryUINode(PKG + "comment_panel"));
+        panel.addChild(new MemoryUINode(PKG + "comment_title")).setText("全部评论");
+        panel.addChild(new MemoryUINode(PKG + "a9c")).setText("善语结善缘，恶言伤人心");
+        return video;
+    }
+
+    /**
+     * 与视频无关的界面（个人主页）
+     */
+    static MemoryUINode profilePage() {
+        MemoryUINode root = new MemoryUINode(null);
+        root.addChild(new MemoryUINode(PKG + "user_name")).setText("@测试用户");
+        MemoryUINode tabs = root.addChild(new MemoryUINode(PKG + "tab_layout"));
+        tabs.addChild(new MemoryUINode(PKG + "tab_text")).setText("作品");
+        tabs.addChild(new MemoryUINode(PKG + "tab_text")).setText("喜欢");
+        return root;
+    }
+
+    private static void addPage(MemoryUINode pager, String author, String caption, boolean visible, int likes) {
+        MemoryUINode page = pager.addChild(new MemoryUINode(PKG + "video_page")).setVisibleToUser(visible);
+        MemoryUINode column = page.addChild(new MemoryUINode(PKG + "right_column")).setVisibleToUser(visible);
+        column.addChild(new MemoryUINode(PKG + "bz3")).setContentDescription("喜欢" + likes).setVisibleToUser(visible);
+        column.addChild(new MemoryUINode(PKG + "d0l")).setContentDescription("评论").setVisibleToUser(visible);
+        MemoryUINode info = page.addChild(new MemoryUINode(PKG + "bottom_info")).setVisibleToUser(visible);
+        if (author != null) {
+            info.addChild(new MemoryUINode(PKG + "title")).setText(author).setVisibleToUser(visible);
+        }
+        if (caption != null) {
+            info.addChild(new MemoryUINode(PKG + "desc")).setText(caption).setVisibleToUser(visible);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.douyinautomation.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class VideoFingerprintTest {
+
+    private final SelectorProfile profile = TestScreens.profile();
+    private final DouyinUIMatcher matcher = new DouyinUIMatcher();
+
+    private long fingerprint(UINode screen) {
+        return VideoFingerprint.compute(matcher, profile, screen);
+    }
+
+    @Test
+    public void stableWhenCountersChange() {
+        assertEquals(fingerprint(TestScreens.video("作者A", "文案A", 10)),
+                fingerprint(TestScreens.withCommentPanel(TestScreens.video("作者A", "文案A", 99))));
+    }
+
+    @Test
+    public void differsByAuthorOrCaption() {
+        long base = fingerprint(TestScreens.video("作者A", "文案A", 10));
+        assertNotEquals(base, fingerprint(TestScreens.video("作者B", "文案A", 10)));
+        assertNotEquals(base, fingerprint(TestScreens.video("作者A", "文案B", 10)));
+    }
+
+    @Test
+    public void separatesAuthorFromCaption() {
+        assertNotEquals(fingerprint(TestScreens.video("ab", "c", 0)), fingerprint(TestScreens.video("a", "bc", 0)));
+    }
+
+    @Test
+    public void onlyTheVisiblePageCounts() {
+        // 预加载的页面不可见，只有它们带作者名和文案
+        assertEquals(VideoFingerprint.UNKNOWN, fingerprint(TestScreens.video(null, null, 10)));
+        assertNotEquals(VideoFingerprint.UNKNOWN, fingerprint(TestScreens.video("作者A", null, 10)));
+    }
+
+    @Test
+    public void unknownWithoutTree() {
+        assertEquals(VideoFingerprint.UNKNOWN, fingerprint(null));
+    }
+
+    @Test
+    public void recentVideosEvictTheLeastRecentlyUsed() {
+        VideoFingerprint.RecentVideos recent = new VideoFingerprint.RecentVideos(2);
+        assertTrue(recent.add(1));
+        assertTrue(recent.add(2));
+        assertFalse(recent.add(1));
+        assertTrue(recent.add(3));
+        // 2最久未访问，已被淘汰
+        assertFalse(recent.contains(2));
+        assertTrue(recent.contains(1));
+        assertTrue(recent.contains(3));
+    }
+}